@@ -0,0 +1,150 @@
+package net.mine_diver.sarcasm;
+
+import net.mine_diver.sarcasm.util.Util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.objectweb.asm.Opcodes.V11;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+/**
+ * The way proxy classes are defined at runtime.
+ *
+ * <p>
+ *     The backend is selected by runtime capability, preferring hidden classes,
+ *     and can be forced with the {@code sarcasm.proxyDefiner} system property.
+ * </p>
+ */
+enum ProxyDefiner {
+    /**
+     * Defines proxies with {@code Lookup.defineHiddenClass} as nestmates of the target class,
+     * which gives them the same private access anonymous classes had.
+     * Final fields of hidden classes are trusted by the JIT.
+     *
+     * <p>
+     *     "super.super" calls still have to go through method handles,
+     *     since the verifier only allows {@code invokespecial} on the direct superclass.
+     *     Final target classes can't be proxied, since their flags can only be patched on Java 8.
+     * </p>
+     */
+    HIDDEN(V11, false) {
+        private MethodHandle defineHiddenClass;
+        private Object nestmate;
+
+        @Override
+        boolean isSupported() {
+            if (defineHiddenClass != null) return true;
+            try {
+                final Class<?> classOption = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+                final Object options = Array.newInstance(classOption, 1);
+                Array.set(options, 0, classOption.getField("NESTMATE").get(null));
+                defineHiddenClass = MethodHandles.publicLookup()
+                        .findVirtual(MethodHandles.Lookup.class, "defineHiddenClass", MethodType.methodType(MethodHandles.Lookup.class, byte[].class, boolean.class, options.getClass()))
+                        .asFixedArity();
+                nestmate = options;
+                return true;
+            } catch (final ReflectiveOperationException e) {
+                return false;
+            }
+        }
+
+        @Override
+        Class<?> defineProxy(Class<?> targetClass, byte[] bytes) {
+            try {
+                return ((MethodHandles.Lookup) defineHiddenClass.invoke(Util.IMPL_LOOKUP.in(targetClass), bytes, false, nestmate)).lookupClass();
+            } catch (final RuntimeException | Error e) {
+                throw e;
+            } catch (final Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
+    },
+
+    /**
+     * Defines proxies with {@code Unsafe.defineAnonymousClass} hosted by the target class. Only available up to Java 16.
+     *
+     * <p>Final target classes can only be proxied on Java 8, since the {@code Klass} layout changed after.
+     */
+    ANONYMOUS(V1_8, "1.8".equals(System.getProperty("java.specification.version"))) {
+        @Override
+        boolean isSupported() {
+            try {
+                Util.UNSAFE.getClass().getMethod("defineAnonymousClass", Class.class, byte[].class, Object[].class);
+                return true;
+            } catch (final NoSuchMethodException e) {
+                return false;
+            }
+        }
+
+        @Override
+        Class<?> defineProxy(Class<?> targetClass, byte[] bytes) {
+            return Util.UNSAFE.defineAnonymousClass(targetClass, bytes, null);
+        }
+    };
+
+    private static final MethodHandle LOOKUP_DEFINE_CLASS;
+    static {
+        MethodHandle defineClass;
+        try {
+            defineClass = MethodHandles.publicLookup().findVirtual(MethodHandles.Lookup.class, "defineClass", MethodType.methodType(Class.class, byte[].class));
+        } catch (final ReflectiveOperationException e) {
+            defineClass = null;
+        }
+        LOOKUP_DEFINE_CLASS = defineClass;
+    }
+    static final ProxyDefiner CURRENT = select();
+
+    private static ProxyDefiner select() {
+        final String forced = System.getProperty("sarcasm.proxyDefiner");
+        if (forced != null) {
+            final ProxyDefiner definer = valueOf(forced.toUpperCase(Locale.ROOT));
+            if (!definer.isSupported()) throw new IllegalStateException("Proxy definer " + definer + " isn't supported by this runtime!");
+            return definer;
+        }
+        return Arrays.stream(values()).filter(ProxyDefiner::isSupported).findFirst().orElseThrow(() -> new IllegalStateException("No proxy definer is supported by this runtime!"));
+    }
+
+    /**
+     * The class file version proxies are generated with.
+     */
+    final int classVersion;
+
+    /**
+     * Whether the final flag of target classes can be cleared, which relies on Java 8's {@code Klass} layout,
+     * so it's only true on Java 8.
+     */
+    final boolean canProxyFinalClasses;
+
+    ProxyDefiner(int classVersion, boolean canProxyFinalClasses) {
+        this.classVersion = classVersion;
+        this.canProxyFinalClasses = canProxyFinalClasses;
+    }
+
+    abstract boolean isSupported();
+
+    /**
+     * Defines a regular class in the target's class loader and package,
+     * with {@code Lookup.defineClass} if available, since {@code Unsafe.defineClass} was removed in Java 11.
+     */
+    static Class<?> defineBridge(Class<?> targetClass, String name, byte[] bytes) {
+        if (LOOKUP_DEFINE_CLASS == null)
+            return Util.UNSAFE.defineClass(name, bytes, 0, bytes.length, targetClass.getClassLoader(), targetClass.getProtectionDomain());
+        try {
+            return (Class<?>) LOOKUP_DEFINE_CLASS.invoke(Util.IMPL_LOOKUP.in(targetClass), bytes);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Defines a proxy class with private access to the target class.
+     */
+    abstract Class<?> defineProxy(Class<?> targetClass, byte[] bytes);
+}
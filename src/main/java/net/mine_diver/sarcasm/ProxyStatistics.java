@@ -0,0 +1,86 @@
+package net.mine_diver.sarcasm;
+
+/**
+ * A snapshot of the proxy classes SarcASM has defined.
+ *
+ * <p>
+ *     A proxy class is live if it's the current proxy class of its target,
+ *     and stale if it was replaced but is still reachable, usually through old proxy instances.
+ *     Stale classes can't be unloaded, so a growing stale count points to instances that never got re-injected.
+ * </p>
+ *
+ * @see SarcASM#getProxyStatistics()
+ */
+public final class ProxyStatistics {
+    private final long definedClasses;
+    private final long collectedClasses;
+    private final int liveClasses;
+    private final int staleClasses;
+    private final long estimatedMetaspaceBytes;
+    private final int bridgeClasses;
+    private final long offHeapBytes;
+
+    ProxyStatistics(long definedClasses, long collectedClasses, int liveClasses, int staleClasses, long estimatedMetaspaceBytes, int bridgeClasses, long offHeapBytes) {
+        this.definedClasses = definedClasses;
+        this.collectedClasses = collectedClasses;
+        this.liveClasses = liveClasses;
+        this.staleClasses = staleClasses;
+        this.estimatedMetaspaceBytes = estimatedMetaspaceBytes;
+        this.bridgeClasses = bridgeClasses;
+        this.offHeapBytes = offHeapBytes;
+    }
+
+    /**
+     * @return the number of proxy classes defined since startup
+     */
+    public long getDefinedClasses() {
+        return definedClasses;
+    }
+
+    /**
+     * @return the number of proxy classes that were unloaded
+     */
+    public long getCollectedClasses() {
+        return collectedClasses;
+    }
+
+    public int getLiveClasses() {
+        return liveClasses;
+    }
+
+    public int getStaleClasses() {
+        return staleClasses;
+    }
+
+    /**
+     * The metaspace used by reachable proxy classes, approximated by the size of their class files.
+     * The actual usage is usually higher.
+     *
+     * @return the estimated metaspace usage in bytes
+     */
+    public long getEstimatedMetaspaceBytes() {
+        return estimatedMetaspaceBytes;
+    }
+
+    /**
+     * @return the number of bridge classes whose class loaders are still alive
+     */
+    public int getBridgeClasses() {
+        return bridgeClasses;
+    }
+
+    /**
+     * The proxy class bytes SarcASM keeps off the heap, to tell whether regenerations changed the proxy
+     * and for proxies prewarmed in the background.
+     *
+     * @return the off-heap footprint in bytes
+     */
+    public long getOffHeapBytes() {
+        return offHeapBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "ProxyStatistics{defined=" + definedClasses + ", collected=" + collectedClasses + ", live=" + liveClasses + ", stale=" + staleClasses + ", estimatedMetaspaceBytes=" + estimatedMetaspaceBytes + ", bridges=" + bridgeClasses + ", offHeapBytes=" + offHeapBytes + "}";
+    }
+}
@@ -1,27 +1,43 @@
 package net.mine_diver.sarcasm;
 
+import net.mine_diver.sarcasm.aot.PrecomputedProxies;
+import net.mine_diver.sarcasm.aot.ProxyFingerprint;
+import net.mine_diver.sarcasm.aot.SharedProxyCache;
+import net.mine_diver.sarcasm.injector.BulkProxyInjector;
 import net.mine_diver.sarcasm.injector.ProxyInjector;
+import net.mine_diver.sarcasm.jfr.SarcASMEvents;
+import net.mine_diver.sarcasm.metrics.Metrics;
 import net.mine_diver.sarcasm.transformer.*;
+import net.mine_diver.sarcasm.util.ByteArena;
+import net.mine_diver.sarcasm.util.ClassPattern;
+import net.mine_diver.sarcasm.util.Identifier;
+import net.mine_diver.sarcasm.util.KlassPointer;
 import net.mine_diver.sarcasm.util.Namespace;
-import net.mine_diver.sarcasm.util.Reflection;
 import net.mine_diver.sarcasm.util.Util;
+import net.mine_diver.sarcasm.util.collection.ClassPatternIndex;
+import net.mine_diver.sarcasm.util.collection.ConcurrentWeakIdentityMap;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.io.*;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
@@ -68,11 +84,37 @@ public final class SarcASM {
         LOGGER.addHandler(handler);
     }
     private static final boolean DEBUG_EXPORT = Boolean.getBoolean("sarcasm.debug.export");
+    private static final boolean IN_PLACE_INJECTION = Boolean.getBoolean("sarcasm.inject.inPlace");
+    private static final int MIN_PARALLEL_TARGETS = Integer.getInteger("sarcasm.inject.minParallelTargets", 256);
     private static final int MODIFIER_OFFSET = 152;
     private static final int ACCESS_FLAG_OFFSET = 156;
-    private static final Map<Class<?>, Class<?>> PROXY_CLASSES = new IdentityHashMap<>();
-    private static final Map<Class<?>, Set<ProxyInjector<?>>> INJECTORS = new IdentityHashMap<>();
-    private static final Map<Class<?>, TransformerManager> TRANSFORMERS = new IdentityHashMap<>();
+    private static final ClassValue<TargetState> TARGETS = new ClassValue<TargetState>() {
+        @Override
+        protected TargetState computeValue(Class<?> type) {
+            return new TargetState();
+        }
+    };
+    // target classes with a transformer manager, for registering pattern transformers and recording the prewarm manifest
+    private static final Set<Class<?>> MANAGED_CLASSES = Collections.newSetFromMap(new WeakHashMap<>());
+    private static final Map<Class<?>, Long> PROXY_EPOCHS = Collections.synchronizedMap(new WeakHashMap<>());
+    private static final Set<ProxyClassReference> PROXY_CLASS_REFERENCES = ConcurrentHashMap.newKeySet();
+    private static final ReferenceQueue<Class<?>> PROXY_CLASS_QUEUE = new ReferenceQueue<>();
+    private static final LongAdder DEFINED_PROXY_CLASSES = new LongAdder();
+    private static final LongAdder COLLECTED_PROXY_CLASSES = new LongAdder();
+    private static final ConcurrentWeakIdentityMap<Object, Object> UNTRACKED_PROXIES = new ConcurrentWeakIdentityMap<>();
+    private static final ClassPatternIndex<PatternTransformer> PATTERN_TRANSFORMERS = new ClassPatternIndex<>();
+    private static final ByteArena PROXY_BYTES = new ByteArena();
+    private static final String PREWARM_FILE = System.getProperty("sarcasm.prewarm.file");
+    static {
+        if (PREWARM_FILE != null)
+            Runtime.getRuntime().addShutdownHook(new Thread(SarcASM::recordPrewarmManifest, "SarcASM prewarm recorder"));
+        Metrics.registerGauge("proxies.defined", () -> getProxyStatistics().getDefinedClasses());
+        Metrics.registerGauge("proxies.collected", () -> getProxyStatistics().getCollectedClasses());
+        Metrics.registerGauge("proxies.live", () -> getProxyStatistics().getLiveClasses());
+        Metrics.registerGauge("proxies.stale", () -> getProxyStatistics().getStaleClasses());
+        Metrics.registerGauge("proxies.estimatedMetaspaceBytes", () -> getProxyStatistics().getEstimatedMetaspaceBytes());
+        Metrics.registerGauge("proxies.offHeapBytes", PROXY_BYTES::getFootprint);
+    }
 
 
     /**
@@ -85,13 +127,127 @@ public final class SarcASM {
      * @param <T> the target class type
      */
     public static <T> void registerInjector(final Class<T> targetClass, final ProxyInjector<T> injector) {
-        if (!INJECTORS.computeIfAbsent(Objects.requireNonNull(targetClass), value -> Util.newIdentitySet()).add(Objects.requireNonNull(injector)))
+        final TargetState state = TARGETS.get(Objects.requireNonNull(targetClass));
+        final boolean added;
+        synchronized (state) {
+            added = state.injectors.add(Objects.requireNonNull(injector));
+        }
+        if (!added)
             LOGGER.warning("Tried registering the same \"" + targetClass.getName() + "\" injector at \"" + injector.getClass().getName() + "\" twice. Please check your code");
         initProxyFor(targetClass);
     }
 
+    /**
+     * Registers a bulk injector for the given class and initializes proxy if transformers already exist.
+     *
+     * @param targetClass the target class
+     * @param injector the bulk injector instance
+     * @param <T> the target class type
+     */
+    public static <T> void registerBulkInjector(final Class<T> targetClass, final BulkProxyInjector<T> injector) {
+        final TargetState state = TARGETS.get(Objects.requireNonNull(targetClass));
+        final boolean added;
+        synchronized (state) {
+            added = state.bulkInjectors.add(Objects.requireNonNull(injector));
+        }
+        if (!added)
+            LOGGER.warning("Tried registering the same \"" + targetClass.getName() + "\" bulk injector at \"" + injector.getClass().getName() + "\" twice. Please check your code");
+        initProxyFor(targetClass);
+    }
+
     public static <T> TransformerManager getManager(Class<T> targetClass) {
-        return TRANSFORMERS.computeIfAbsent(targetClass, SarcASM::initDefaultTransformers);
+        final TargetState state = TARGETS.get(targetClass);
+        final TransformerManager manager = state.manager;
+        if (manager != null) return manager;
+        synchronized (state) {
+            if (state.manager == null) {
+                state.manager = initDefaultTransformers(targetClass);
+                synchronized (MANAGED_CLASSES) {
+                    MANAGED_CLASSES.add(targetClass);
+                }
+            }
+            return state.manager;
+        }
+    }
+
+    public static void registerTransformer(final ClassPattern pattern, final Function<Class<?>, ? extends ProxyTransformer> factory) {
+        registerTransformer(pattern, TransformerManager.DEFAULT_PHASE, factory);
+    }
+
+    /**
+     * Registers a transformer for every class matching the given pattern.
+     *
+     * <p>
+     *     Transformers are created with the factory once a matching class gets a transformer manager,
+     *     which happens lazily when its proxy is first needed,
+     *     and right away for matching classes that already have one.
+     * </p>
+     *
+     * @param pattern the pattern of target classes
+     * @param phaseIdentifier the phase to register the transformers in
+     * @param factory the transformer factory, called once per matching target class
+     */
+    public static void registerTransformer(final ClassPattern pattern, final Identifier phaseIdentifier, final Function<Class<?>, ? extends ProxyTransformer> factory) {
+        final PatternTransformer patternTransformer = new PatternTransformer(Objects.requireNonNull(phaseIdentifier), Objects.requireNonNull(factory));
+        PATTERN_TRANSFORMERS.add(Objects.requireNonNull(pattern), patternTransformer);
+        final List<Class<?>> managedClasses;
+        synchronized (MANAGED_CLASSES) {
+            managedClasses = new ArrayList<>(MANAGED_CLASSES);
+        }
+        managedClasses
+                .stream()
+                .filter(pattern::matches)
+                .forEach(targetClass -> getManager(targetClass).register(phaseIdentifier, factory.apply(targetClass)));
+    }
+
+    /**
+     * Enables or disables in-place injection for the given target class,
+     * overriding the {@code sarcasm.inject.inPlace} system property.
+     *
+     * <p>
+     *     Instead of copying each target instance into a new proxy instance,
+     *     in-place injection changes the class of the target instance itself to the proxy class.
+     *     This way, references the injectors don't know about get upgraded too, and no fields are copied.
+     *     It's only done if the proxy class declares no instance fields, so its layout is the same as the target's,
+     *     and the {@link KlassPointer} layout of the VM is known, otherwise the instance is copied as usual.
+     * </p>
+     *
+     * @param targetClass the target class
+     * @param inPlace whether target instances should be retyped in place
+     */
+    public static void setInPlaceInjection(final Class<?> targetClass, final boolean inPlace) {
+        TARGETS.get(Objects.requireNonNull(targetClass)).inPlaceInjection = inPlace;
+    }
+
+    /**
+     * Enables or disables transforming the given target class in place with {@link SarcASMAgent}.
+     *
+     * <p>
+     *     It's off by default, so target classes are proxied even while the agent is attached.
+     *     Once enabled, the target class itself is retransformed whenever its transformers change,
+     *     and disabling it again restores the original class.
+     *     Proxy instances that were already injected stay in place.
+     * </p>
+     *
+     * @param targetClass the target class
+     * @param inPlace whether the target class should be transformed in place by the agent
+     */
+    public static void setInPlaceTransformation(final Class<?> targetClass, final boolean inPlace) {
+        final TargetState state = TARGETS.get(Objects.requireNonNull(targetClass));
+        synchronized (state) {
+            if (state.inPlaceTransformation == inPlace) return;
+            state.inPlaceTransformation = inPlace;
+            state.proxyClass = null;
+            // classes transformed in place have no use for prewarmed proxy bytes
+            PrewarmedProxy.release(state.prewarmed);
+            state.prewarmed = null;
+        }
+        if (state.manager != null && SarcASMAgent.canRetransform(targetClass))
+            SarcASMAgent.retransform(targetClass);
+    }
+
+    static boolean isInPlaceTransformation(final Class<?> targetClass) {
+        return TARGETS.get(targetClass).inPlaceTransformation;
     }
 
     /**
@@ -105,24 +261,89 @@ public final class SarcASM {
      * @param <P> the proxy class type
      */
     public static <T, P extends T> void initProxyFor(final Class<T> targetClass) {
+        // classes transformed in place have nothing to inject
+        if (SarcASMAgent.handles(targetClass)) return;
+
         // sanity checks
-        //noinspection unchecked
-        final Set<ProxyInjector<T>> injectors = (Set<ProxyInjector<T>>) (Set<?>) INJECTORS.get(targetClass);
-        if (injectors == null) {
+        final TargetState state = TARGETS.get(targetClass);
+        final Set<ProxyInjector<T>> injectors = Util.newIdentitySet();
+        final Set<BulkProxyInjector<T>> bulkInjectors = Util.newIdentitySet();
+        synchronized (state) {
+            //noinspection unchecked
+            injectors.addAll((Set<ProxyInjector<T>>) (Set<?>) state.injectors);
+            @SuppressWarnings("unchecked")
+            final Set<BulkProxyInjector<T>> stateBulkInjectors = (Set<BulkProxyInjector<T>>) (Set<?>) state.bulkInjectors;
+            bulkInjectors.addAll(stateBulkInjectors);
+        }
+        if (injectors.isEmpty() && bulkInjectors.isEmpty()) {
             LOGGER.info("\"" + targetClass.getName() + "\" has no injectors. Skipping");
             return;
         }
 
         Class<P> proxyClass = SarcASM.<T, P>getProxyClass(targetClass).orElseThrow(() -> new IllegalStateException(String.format("Class %s isn't proxyable!", targetClass.getName())));
-        // injecting
-        injectors
+        final Boolean inPlaceInjection = state.inPlaceInjection;
+        final boolean inPlaceRequested = (inPlaceInjection == null ? IN_PLACE_INJECTION : inPlaceInjection) && !declaresInstanceFields(proxyClass, targetClass);
+        final boolean inPlace = inPlaceRequested && KlassPointer.isSupported();
+        if (inPlaceRequested && !inPlace)
+            LOGGER.warning("Class pointer layout of this VM is unknown, copying \"" + targetClass.getName() + "\" instances instead of retyping them in place");
+        // gathering targets
+        // (targets that already are instances of the current proxy class are skipped along with their injectors)
+        final Map<T, Set<ProxyInjector<T>>> targetInjectors = injectors
                 .stream()
-                .filter(tProxyInjector -> tProxyInjector.getTargetInstance() != null)
-                .collect(Collectors.groupingBy(ProxyInjector::getTargetInstance, IdentityHashMap::new, Collectors.toCollection(Util::newIdentitySet)))
-                .forEach((target, targetInjectors) -> {
-                    final P proxyInstance = createShallowProxy(targetClass, proxyClass, target);
-                    targetInjectors.forEach(targetInjector -> targetInjector.inject(proxyInstance));
-                });
+                .filter(tProxyInjector -> {
+                    final T target = tProxyInjector.getTargetInstance();
+                    return target != null && target.getClass() != proxyClass;
+                })
+                .collect(Collectors.groupingBy(ProxyInjector::getTargetInstance, IdentityHashMap::new, Collectors.toCollection(Util::newIdentitySet)));
+        final Map<BulkProxyInjector<T>, List<T>> bulkTargets = new IdentityHashMap<>();
+        final Map<T, P> proxies = new IdentityHashMap<>();
+        targetInjectors.keySet().forEach(target -> proxies.put(target, null));
+        bulkInjectors.forEach(bulkInjector -> {
+            final List<T> tTargets = bulkInjector.getTargetInstances();
+            boolean outdated = false;
+            for (final T target : tTargets) if (target != null && target.getClass() != proxyClass) {
+                proxies.put(target, null);
+                outdated = true;
+            }
+            if (outdated) bulkTargets.put(bulkInjector, tTargets);
+        });
+        if (proxies.isEmpty()) return;
+
+        // creating proxies, each target only once
+        final long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        final Object event = SarcASMEvents.beginProxyInjected();
+        @SuppressWarnings("unchecked")
+        final T[] targets = (T[]) proxies.keySet().toArray();
+        final Object[] proxyInstances = new Object[targets.length];
+        final Field[] fields = inPlace ? null : getInstanceFields(targetClass);
+        // the proxy class pointer is read once from a throwaway instance and written into every target
+        final long proxyKlass;
+        if (inPlace) try {
+            proxyKlass = KlassPointer.read(Util.UNSAFE.allocateInstance(proxyClass));
+        } catch (final InstantiationException e) {
+            throw new RuntimeException(e);
+        } else proxyKlass = 0;
+        IntStream indices = IntStream.range(0, targets.length);
+        if (targets.length >= MIN_PARALLEL_TARGETS) indices = indices.parallel();
+        indices.forEach(i -> proxyInstances[i] = inPlace ? retype(targetClass, proxyClass, proxyKlass, targets[i]) : createShallowProxy(proxyClass, targets[i], fields));
+        for (int i = 0; i < targets.length; i++)
+            proxies.put(targets[i], proxyClass.cast(proxyInstances[i]));
+
+        // injecting
+        targetInjectors.forEach((target, tInjectors) -> {
+            final P proxyInstance = proxies.get(target);
+            tInjectors.forEach(targetInjector -> targetInjector.inject(proxyInstance));
+        });
+        bulkTargets.forEach((bulkInjector, tTargets) -> {
+            final List<T> tProxies = new ArrayList<>(tTargets.size());
+            for (final T target : tTargets) tProxies.add(target == null || target.getClass() == proxyClass ? target : proxies.get(target));
+            bulkInjector.inject(tProxies);
+        });
+        if (Metrics.ENABLED) {
+            Metrics.timer("injection." + targetClass.getName()).recordSince(start);
+            if (!inPlace) Metrics.counter("injection.instancesCopied").add(targets.length);
+        }
+        if (event != null) SarcASMEvents.commitProxyInjected(event, targetClass, targets.length, inPlace);
     }
 
     /**
@@ -147,7 +368,43 @@ public final class SarcASM {
     public static <T> T tryWrapUntrackedProxy(final T target) {
         //noinspection unchecked
         final Class<T> targetClass = (Class<T>) target.getClass();
-        return getProxyClass(targetClass).map(proxyClass -> createShallowProxy(targetClass, proxyClass, target)).orElse(target);
+        final Object event = SarcASMEvents.beginUntrackedWrap();
+        if (Metrics.ENABLED) Metrics.counter("untracked.calls").increment();
+        if (!TARGETS.get(targetClass).memoizeUntrackedProxies)
+            return getProxyClass(targetClass).map(proxyClass -> wrapped(targetClass, createShallowProxy(targetClass, proxyClass, target), "untracked.misses", "miss", event))
+                    .orElseGet(() -> wrapped(targetClass, target, "untracked.negative", "negative", event));
+        return getProxyClass(targetClass).map(proxyClass -> {
+            final Object cached = UNTRACKED_PROXIES.get(target);
+            if (cached != null && cached.getClass() == proxyClass)
+                return wrapped(targetClass, proxyClass.cast(cached), "untracked.hits", "hit", event);
+            final T proxyInstance = createShallowProxy(targetClass, proxyClass, target);
+            UNTRACKED_PROXIES.put(target, proxyInstance);
+            return wrapped(targetClass, proxyInstance, "untracked.misses", "miss", event);
+        }).orElseGet(() -> wrapped(targetClass, target, "untracked.negative", "negative", event));
+    }
+
+    private static <T> T wrapped(final Class<T> targetClass, final T result, final String counter, final String outcome, final Object event) {
+        if (Metrics.ENABLED) Metrics.counter(counter).increment();
+        if (event != null) SarcASMEvents.commitUntrackedWrap(event, targetClass, outcome);
+        return result;
+    }
+
+    /**
+     * Enables or disables memoization of untracked proxies for the given target class.
+     *
+     * <p>
+     *     While enabled, {@link #tryWrapUntrackedProxy(Object)} returns the same proxy instance
+     *     for the same target instance as long as the proxy class doesn't change,
+     *     instead of copying the target each time. This only makes sense for targets
+     *     that aren't modified after being wrapped, since the proxy is a copy.
+     *     Targets are held weakly.
+     * </p>
+     *
+     * @param targetClass the target class
+     * @param memoize whether untracked proxies should be memoized
+     */
+    public static void setUntrackedProxyMemoization(final Class<?> targetClass, final boolean memoize) {
+        TARGETS.get(Objects.requireNonNull(targetClass)).memoizeUntrackedProxies = memoize;
     }
 
     /**
@@ -158,25 +415,101 @@ public final class SarcASM {
      * @param <T> the target type
      */
     public static <T> Stream<ProxyTransformer> streamTransformers(final Class<T> targetClass) {
-        return TRANSFORMERS.containsKey(targetClass) ? TRANSFORMERS.get(targetClass).stream() : Stream.empty();
+        final TransformerManager manager = getExistingManager(targetClass);
+        return manager != null ? manager.stream() : Stream.empty();
+    }
+
+    /**
+     * Checks whether the given instance is an instance of the current proxy class of its target class.
+     * Doesn't generate the proxy class.
+     *
+     * @param instance the instance
+     * @return whether the instance is up-to-date
+     */
+    public static boolean isCurrent(final Object instance) {
+        final Class<?> instanceClass = instance.getClass();
+        return PROXY_EPOCHS.containsKey(instanceClass) && TARGETS.get(instanceClass.getSuperclass()).proxyClass == instanceClass;
+    }
+
+    /**
+     * Returns the epoch of the last proxy class generated for the given target class.
+     * The epoch only changes when a regenerated proxy class differs from the previous one,
+     * otherwise the previous class is reused and its instances stay up-to-date.
+     * Doesn't generate the proxy class.
+     *
+     * @param targetClass the target class
+     * @return the epoch of the last generated proxy class, or 0 if none was generated
+     */
+    public static long currentEpoch(final Class<?> targetClass) {
+        final ProxyGeneration generation = TARGETS.get(targetClass).lastGeneration;
+        return generation == null ? 0 : generation.epoch;
+    }
+
+    /**
+     * Counts the proxy classes that are still reachable, separating the current ones from stale generations.
+     *
+     * @return the proxy class statistics
+     */
+    public static ProxyStatistics getProxyStatistics() {
+        expungeProxyClasses();
+        int live = 0;
+        int stale = 0;
+        long metaspace = 0;
+        for (final ProxyClassReference reference : PROXY_CLASS_REFERENCES) {
+            final Class<?> proxyClass = reference.get();
+            if (proxyClass == null) continue;
+            if (TARGETS.get(proxyClass.getSuperclass()).proxyClass == proxyClass) live++;
+            else stale++;
+            metaspace += reference.size;
+        }
+        final int bridges;
+        synchronized (BRIDGE_CLASSES) {
+            bridges = BRIDGE_CLASSES.size();
+        }
+        return new ProxyStatistics(DEFINED_PROXY_CLASSES.sum(), COLLECTED_PROXY_CLASSES.sum(), live, stale, metaspace, bridges, PROXY_BYTES.getFootprint());
+    }
+
+    private static void expungeProxyClasses() {
+        Reference<? extends Class<?>> reference;
+        while ((reference = PROXY_CLASS_QUEUE.poll()) != null) if (PROXY_CLASS_REFERENCES.remove(reference))
+            COLLECTED_PROXY_CLASSES.increment();
     }
 
     public static <T> void invalidateProxyClass(Class<T> targetClass) {
-        PROXY_CLASSES.remove(targetClass);
+        final TargetState state = TARGETS.get(targetClass);
+        // waiting for a generation in progress, so it doesn't publish a proxy class generated with the old transformers
+        synchronized (state) {
+            state.proxyClass = null;
+        }
+        // the default transformers are registered before the manager is, so the class is only retransformed once they're all in
+        if (state.manager != null && SarcASMAgent.handles(targetClass))
+            SarcASMAgent.retransform(targetClass);
+    }
+
+    private static boolean hasInjectors(Class<?> targetClass) {
+        final TargetState state = TARGETS.get(targetClass);
+        synchronized (state) {
+            return !state.injectors.isEmpty() || !state.bulkInjectors.isEmpty();
+        }
     }
 
     private static <T> TransformerManager initDefaultTransformers(Class<T> targetClass) {
-        TransformerManager manager = TransformerManager.createArrayBacked(targetClass, INJECTORS::containsKey);
+        TransformerManager manager = TransformerManager.createArrayBacked(targetClass, SarcASM::hasInjectors);
         manager.addPhaseOrdering(RequestedMethodsTransformer.PHASE, TransformerManager.DEFAULT_PHASE);
         manager.addPhaseOrdering(TransformerManager.DEFAULT_PHASE, ProxyWrapperTransformer.PHASE);
         manager.addPhaseOrdering(ProxyWrapperTransformer.PHASE, SuperSuperTransformer.PHASE);
         manager.register(RequestedMethodsTransformer.PHASE, RequestedMethodsTransformer.of(targetClass), false);
         manager.register(ProxyWrapperTransformer.PHASE, ProxyWrapperTransformer.of(targetClass), false);
         manager.register(SuperSuperTransformer.PHASE, SuperSuperTransformer.of(targetClass), false);
+        PATTERN_TRANSFORMERS.match(targetClass).forEach(patternTransformer -> manager.register(patternTransformer.phaseIdentifier, patternTransformer.factory.apply(targetClass), false));
         return manager;
     }
 
     private static <T, P extends T> P createShallowProxy(final Class<T> targetClass, final Class<P> proxyClass, final T target) {
+        return createShallowProxy(proxyClass, target, getInstanceFields(targetClass));
+    }
+
+    private static <T, P extends T> P createShallowProxy(final Class<P> proxyClass, final T target, final Field[] fields) {
         final P proxyInstance;
         try {
             //noinspection unchecked
@@ -184,78 +517,320 @@ public final class SarcASM {
         } catch (InstantiationException e) {
             throw new RuntimeException(e);
         }
+        for (Field field : fields) try {
+            field.set(proxyInstance, field.get(target));
+        } catch (final IllegalArgumentException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+        return proxyInstance;
+    }
+
+    private static Field[] getInstanceFields(final Class<?> targetClass) {
+        final List<Field> fields = new ArrayList<>();
         Class<?> currentClass = targetClass;
         while (currentClass != null) {
             for (Field field : currentClass.getDeclaredFields())
-                if (!Modifier.isStatic(field.getModifiers())) try {
-                    Reflection.publicField(field).set(proxyInstance, Reflection.publicField(field).get(target));
-                } catch (final IllegalArgumentException | IllegalAccessException e) {
-                    throw new RuntimeException(e);
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    field.setAccessible(true);
+                    fields.add(field);
                 }
             currentClass = currentClass.getSuperclass();
         }
-        return proxyInstance;
+        return fields.toArray(new Field[0]);
+    }
+
+    private static <T, P extends T> P retype(final Class<T> targetClass, final Class<P> proxyClass, final long proxyKlass, final T target) {
+        final Class<?> currentClass = target.getClass();
+        if (currentClass == proxyClass) return proxyClass.cast(target);
+        // only the exact target class, or a proxy of it retyped earlier, has the same layout as the proxy
+        if (currentClass != targetClass && (currentClass.getSuperclass() != targetClass || declaresInstanceFields(currentClass, targetClass)))
+            return createShallowProxy(targetClass, proxyClass, target);
+        KlassPointer.write(target, proxyKlass);
+        return proxyClass.cast(target);
+    }
+
+    private static boolean declaresInstanceFields(Class<?> type, final Class<?> stopClass) {
+        while (type != stopClass) {
+            for (Field field : type.getDeclaredFields())
+                if (!Modifier.isStatic(field.getModifiers())) return true;
+            type = type.getSuperclass();
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether transformers were registered for the given class, either directly or by pattern.
+     *
+     * @param targetClass the target class
+     * @return whether the class is targeted by any transformers
+     */
+    public static boolean isTargeted(final Class<?> targetClass) {
+        return getExistingManager(targetClass) != null || !PATTERN_TRANSFORMERS.match(targetClass).isEmpty();
+    }
+
+    /**
+     * Generates the proxy class bytes for the given target class without defining it,
+     * for example to precompute them ahead of time.
+     *
+     * @param targetClass the target class
+     * @return the proxy class bytes
+     */
+    public static byte[] generateProxyBytes(final Class<?> targetClass) {
+        return transform(targetClass, getManager(targetClass));
+    }
+
+    /**
+     * Computes the fingerprint of the inputs the proxy class of the given target class is generated from.
+     *
+     * @param targetClass the target class
+     * @return the fingerprint, or null if it can't be computed
+     * @see ProxyFingerprint
+     */
+    public static String getProxyFingerprint(final Class<?> targetClass) {
+        return getProxyFingerprint(targetClass, getManager(targetClass));
+    }
+
+    private static String getProxyFingerprint(final Class<?> targetClass, final TransformerManager manager) {
+        return ProxyFingerprint.of(ProxyDefiner.CURRENT.name() + ' ' + ProxyDefiner.CURRENT.classVersion, targetClass, manager.stream());
+    }
+
+    /**
+     * Generates the proxy classes the previous run recorded in {@code sarcasm.prewarm.file} in the background,
+     * so they don't have to be generated when they're first needed.
+     *
+     * <p>
+     *     Should be called once transformers are registered.
+     *     Classes whose fingerprint changed since the recording are skipped,
+     *     since their transformers likely aren't all registered yet,
+     *     and so are classes without a fingerprint or with a proxy class already generated.
+     *     Prewarmed bytes are only used if neither the transformers nor their fingerprint changed until the proxy class is needed.
+     * </p>
+     *
+     * @param loader the class loader to load the recorded target classes with
+     * @return a future completing once all recorded proxy classes are prewarmed
+     */
+    public static CompletableFuture<Void> prewarm(final ClassLoader loader) {
+        if (PREWARM_FILE == null || !new File(PREWARM_FILE).isFile()) return CompletableFuture.completedFuture(null);
+        final Properties manifest = new Properties();
+        try (InputStream stream = new FileInputStream(PREWARM_FILE)) {
+            manifest.load(stream);
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        // creating managers runs the pattern transformer factories, so it stays on the calling thread
+        final Map<Class<?>, TransformerManager> managers = new IdentityHashMap<>();
+        for (final String name : manifest.stringPropertyNames()) {
+            final Class<?> targetClass;
+            try {
+                targetClass = Class.forName(name, false, loader);
+            } catch (final ClassNotFoundException | LinkageError e) {
+                continue;
+            }
+            if (isTargeted(targetClass) && TARGETS.get(targetClass).proxyClass == null)
+                managers.put(targetClass, getManager(targetClass));
+        }
+        return CompletableFuture.runAsync(() -> managers.entrySet().parallelStream().forEach(entry -> {
+            final Class<?> targetClass = entry.getKey();
+            final TransformerManager manager = entry.getValue();
+            final String recordedFingerprint = manifest.getProperty(targetClass.getName());
+            try {
+                prewarm(targetClass, manager, recordedFingerprint);
+            } catch (final RuntimeException e) {
+                LOGGER.warning("Couldn't prewarm the proxy class of \"" + targetClass.getName() + "\": " + e);
+            }
+        }));
+    }
+
+    private static void prewarm(final Class<?> targetClass, final TransformerManager manager, final String recordedFingerprint) {
+        final TargetState state = TARGETS.get(targetClass);
+        // holding the generation lock, so a generation either waits for the prewarmed bytes or the prewarm is skipped
+        synchronized (state) {
+            if (state.proxyClass != null) return;
+            final String fingerprint = getProxyFingerprint(targetClass, manager);
+            if (fingerprint == null || !recordedFingerprint.isEmpty() && !recordedFingerprint.equals(fingerprint)) return;
+            final ProxyTransformer[] transformers = manager.stream().toArray(ProxyTransformer[]::new);
+            final ByteArena.Block bytes = PROXY_BYTES.store(loadOrTransform(targetClass, manager));
+            PrewarmedProxy.release(state.prewarmed);
+            state.prewarmed = new PrewarmedProxy(transformers, fingerprint, bytes);
+        }
+    }
+
+    private static void recordPrewarmManifest() {
+        final Properties manifest = new Properties();
+        final List<Class<?>> managedClasses;
+        synchronized (MANAGED_CLASSES) {
+            managedClasses = new ArrayList<>(MANAGED_CLASSES);
+        }
+        for (final Class<?> targetClass : managedClasses) {
+            if (TARGETS.get(targetClass).lastGeneration == null) continue;
+            final String fingerprint = getProxyFingerprint(targetClass);
+            manifest.setProperty(targetClass.getName(), fingerprint == null ? "" : fingerprint);
+        }
+        try (OutputStream stream = new FileOutputStream(PREWARM_FILE)) {
+            manifest.store(stream, "Recorded by SarcASM");
+        } catch (final IOException e) {
+            LOGGER.warning("Couldn't record the prewarm manifest \"" + PREWARM_FILE + "\": " + e);
+        }
+    }
+
+    static TransformerManager getExistingManager(final Class<?> targetClass) {
+        synchronized (MANAGED_CLASSES) {
+            if (!MANAGED_CLASSES.contains(targetClass)) return null;
+        }
+        return TARGETS.get(targetClass).manager;
     }
 
     private static <T, P extends T> Optional<Class<P>> getProxyClass(final Class<T> targetClass) {
+        if (SarcASMAgent.handles(targetClass)) {
+            // lazily applying pattern transformers, which is what generating a proxy class would do
+            if (getExistingManager(targetClass) == null) {
+                getManager(targetClass);
+                SarcASMAgent.retransform(targetClass);
+            }
+            return Optional.empty();
+        }
+        final TargetState state = TARGETS.get(targetClass);
+        Class<?> proxyClass = state.proxyClass;
+        if (proxyClass == null) synchronized (state) {
+            proxyClass = state.proxyClass;
+            if (proxyClass == null) state.proxyClass = proxyClass = generateProxyClass(targetClass, state);
+        }
         //noinspection unchecked
-        return Optional.ofNullable((Class<P>) PROXY_CLASSES.computeIfAbsent(targetClass, SarcASM::generateProxyClass));
+        return Optional.ofNullable((Class<P>) proxyClass);
     }
 
-    private static <T, P extends T> Class<P> generateProxyClass(final Class<T> targetClass) {
+    // called with the state's lock held
+    private static <T, P extends T> Class<P> generateProxyClass(final Class<T> targetClass, final TargetState state) {
         // sanity checks
         if (targetClass.getClassLoader() == null) return null;
-        if (PROXY_CLASSES.containsValue(targetClass)) throw new IllegalStateException("Tried to proxy a proxy! " + targetClass.getName());
+        if (PROXY_EPOCHS.containsKey(targetClass)) throw new IllegalStateException("Tried to proxy a proxy! " + targetClass.getName());
 
         // preparations
-        final TransformerManager manager = TRANSFORMERS.computeIfAbsent(targetClass, SarcASM::initDefaultTransformers);
+        final long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        final Object event = SarcASMEvents.beginProxyGenerated();
+        final TransformerManager manager = getManager(targetClass);
+        int generatedBytes = -1;
+        boolean reused = false;
+        try {
+            // using the bytes prewarmed in the background, if neither the transformers nor their configuration changed since
+            byte[] proxyBytes = null;
+            final PrewarmedProxy prewarmed = state.prewarmed;
+            state.prewarmed = null;
+            if (prewarmed != null
+                    && Arrays.equals(prewarmed.transformers, manager.stream().toArray())
+                    && prewarmed.fingerprint.equals(getProxyFingerprint(targetClass, manager)))
+                proxyBytes = prewarmed.bytes.toByteArray();
+            PrewarmedProxy.release(prewarmed);
+            if (proxyBytes == null) proxyBytes = loadOrTransform(targetClass, manager);
 
-        // proxy class generation
-        final ClassNode proxyNode = new ClassNode();
-        proxyNode.visit(V1_8, ACC_PUBLIC, Type.getInternalName(targetClass) + "$$SarcASM$Proxy", null, Type.getInternalName(targetClass), null);
-        proxyNode.visitEnd();
+            // making sure the target class is inheritable
+            // (proxies can't override methods in final classes though)
+            if (Modifier.isFinal(targetClass.getModifiers())) {
+                if (!ProxyDefiner.CURRENT.canProxyFinalClasses)
+                    throw new IllegalStateException("Final class " + targetClass.getName() + " can't be proxied by the " + ProxyDefiner.CURRENT + " proxy definer!");
+                if (!KlassPointer.isSupported())
+                    throw new IllegalStateException("Final class " + targetClass.getName() + " can't be proxied, since the class pointer layout of this VM is unknown!");
+                final Object dummyInstance;
+                try {
+                    dummyInstance = Util.UNSAFE.allocateInstance(targetClass);
+                } catch (final InstantiationException e) {
+                    throw new RuntimeException(e);
+                }
+                final long klassPointer = KlassPointer.getKlass(dummyInstance);
+                Util.UNSAFE.putInt(klassPointer + MODIFIER_OFFSET, Util.UNSAFE.getInt(klassPointer + MODIFIER_OFFSET) & ~Modifier.FINAL);
+                Util.UNSAFE.putInt(klassPointer + ACCESS_FLAG_OFFSET, Util.UNSAFE.getInt(klassPointer + ACCESS_FLAG_OFFSET) & ~Modifier.FINAL);
+            }
 
-        // transforming
-        manager.forEach(transformer -> transformer.transform(proxyNode));
+            // defining
+            debugExport(Type.getInternalName(targetClass) + "$$SarcASM$Proxy", proxyBytes);
 
-        // making sure the target class is inheritable
-        // (proxies can't override methods in final classes though)
-        final T dummyInstance;
-        try {
+            // reusing the previous proxy class if the regeneration didn't change it, so its instances stay current
+            final ProxyGeneration lastGeneration = state.lastGeneration;
+            if (lastGeneration != null && lastGeneration.bytes.contentEquals(proxyBytes)) {
+                reused = true;
+                generatedBytes = proxyBytes.length;
+                @SuppressWarnings("unchecked")
+                final Class<P> reusedClass = (Class<P>) lastGeneration.proxyClass;
+                return reusedClass;
+            }
+
+            // a very, very bad workaround for proxies not being able to use their classes as field types, method argument types, etc., due to being defined as hidden
+            // ideally, proxies should be regular classes and hidden classes should only be used as bridges for private members, but, oh well, too much work
+            // bridges are only held weakly, so they don't pin the target's class loader
+            synchronized (BRIDGE_CLASSES) {
+                if (!BRIDGE_CLASSES.containsKey(targetClass)) {
+                    final String name = Type.getInternalName(targetClass) + "$$SarcASM$Proxy";
+                    ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+                    writer.visit(V1_8, ACC_PUBLIC, name, null, Type.getInternalName(targetClass), null);
+                    writer.visitEnd();
+                    byte[] hackBytes = writer.toByteArray();
+                    BRIDGE_CLASSES.put(targetClass, new WeakReference<>(ProxyDefiner.defineBridge(targetClass, name, hackBytes)));
+                }
+            }
+
+            final Class<? extends T> proxyClass = ProxyDefiner.CURRENT.defineProxy(targetClass, proxyBytes).asSubclass(targetClass);
+            final long epoch = lastGeneration == null ? 1 : lastGeneration.epoch + 1;
+            // only the last generation's bytes are compared with, so older ones can be freed
+            state.lastGeneration = new ProxyGeneration(proxyClass, PROXY_BYTES.store(proxyBytes), epoch);
+            if (lastGeneration != null) lastGeneration.bytes.release();
+            PROXY_EPOCHS.put(proxyClass, epoch);
+            expungeProxyClasses();
+            PROXY_CLASS_REFERENCES.add(new ProxyClassReference(proxyClass, proxyBytes.length));
+            DEFINED_PROXY_CLASSES.increment();
+            generatedBytes = proxyBytes.length;
             //noinspection unchecked
-            dummyInstance = (T) Util.UNSAFE.allocateInstance(targetClass);
-        } catch (final InstantiationException e) {
-            throw new RuntimeException(e);
+            return (Class<P>) proxyClass;
+        } finally {
+            // the reused proxy class is recorded too, failed generations aren't
+            if (generatedBytes >= 0) {
+                if (Metrics.ENABLED) {
+                    Metrics.timer("generation." + targetClass.getName()).recordSince(start);
+                    if (reused) Metrics.counter("proxy.reused").increment();
+                    else Metrics.counter("proxy.bytesDefined").add(generatedBytes);
+                }
+                if (event != null)
+                    SarcASMEvents.commitProxyGenerated(event, targetClass, manager.stream().map(manager::getPhase).filter(Objects::nonNull).distinct().collect(Collectors.toList()), generatedBytes, reused);
+            }
         }
-        final long klassPointer = Util.UNSAFE.arrayIndexScale(Object[].class) == 4 ? (Util.UNSAFE.getInt(dummyInstance, 8L) & 0xFFFFFFFFL) << 3 : Util.UNSAFE.getLong(dummyInstance, 8L);
-        Util.UNSAFE.putInt(klassPointer + MODIFIER_OFFSET, Util.UNSAFE.getInt(klassPointer + MODIFIER_OFFSET) & ~Modifier.FINAL);
-        Util.UNSAFE.putInt(klassPointer + ACCESS_FLAG_OFFSET, Util.UNSAFE.getInt(klassPointer + ACCESS_FLAG_OFFSET) & ~Modifier.FINAL);
+    }
 
-        // defining
-        final ClassWriter proxyWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
-        proxyNode.accept(proxyWriter);
-        final byte[] proxyBytes = proxyWriter.toByteArray();
-        debugExport(proxyNode, proxyBytes);
-
-        // a very, very bad workaround for proxies not being able to use their classes as field types, method argument types, etc., due to being defined as hidden
-        // ideally, proxies should be regular classes and hidden classes should only be used as bridges for private members, but, oh well, too much work
-        DEFINED_CLASSES.computeIfAbsent(Type.getInternalName(targetClass) + "$$SarcASM$Proxy", name -> {
-            ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
-            writer.visit(V1_8, ACC_PUBLIC, name, null, Type.getInternalName(targetClass), null);
-            writer.visitEnd();
-            byte[] hackBytes = writer.toByteArray();
-            return Util.UNSAFE.defineClass(name, hackBytes, 0, hackBytes.length, targetClass.getClassLoader(), targetClass.getProtectionDomain());
-        });
+    private static final Map<Class<?>, Reference<Class<?>>> BRIDGE_CLASSES = new WeakHashMap<>();
 
-        //noinspection unchecked
-        return (Class<P>) Util.UNSAFE.defineAnonymousClass(targetClass, proxyBytes, null).asSubclass(targetClass);
+    private static byte[] loadOrTransform(final Class<?> targetClass, final TransformerManager manager) {
+        // using the bytes generated ahead of time or by another process, if they were generated from the same inputs
+        final String precomputedFingerprint = PrecomputedProxies.getFingerprint(targetClass);
+        final String fingerprint = precomputedFingerprint != null || SharedProxyCache.isEnabled() ? getProxyFingerprint(targetClass, manager) : null;
+        byte[] proxyBytes = null;
+        if (precomputedFingerprint != null && precomputedFingerprint.equals(fingerprint))
+            proxyBytes = PrecomputedProxies.read(targetClass);
+        if (proxyBytes == null && fingerprint != null)
+            proxyBytes = SharedProxyCache.get(fingerprint);
+        if (proxyBytes == null) {
+            proxyBytes = transform(targetClass, manager);
+            if (fingerprint != null) SharedProxyCache.put(fingerprint, proxyBytes);
+        }
+        return proxyBytes;
     }
 
-    private static final Map<String, Class<?>> DEFINED_CLASSES = new HashMap<>();
+    private static byte[] transform(final Class<?> targetClass, final TransformerManager manager) {
+        // proxy class generation
+        final ClassNode proxyNode = new ClassNode();
+        proxyNode.visit(ProxyDefiner.CURRENT.classVersion, ACC_PUBLIC, Type.getInternalName(targetClass) + "$$SarcASM$Proxy", null, Type.getInternalName(targetClass), null);
+        proxyNode.visitEnd();
 
-    private static void debugExport(final ClassNode proxyNode, final byte[] proxyBytes) {
+        // transforming
+        final ClassWriter proxyWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        manager.accept(proxyNode, proxyWriter);
+        final long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        final byte[] proxyBytes = proxyWriter.toByteArray();
+        if (Metrics.ENABLED) Metrics.timer("classWriter").recordSince(start);
+        return proxyBytes;
+    }
+
+    private static void debugExport(final String proxyName, final byte[] proxyBytes) {
         if (DEBUG_EXPORT) {
-            final File exportLoc = new File(".sarcasm.out/class/" + proxyNode.name + ".class");
+            final File exportLoc = new File(".sarcasm.out/class/" + proxyName + ".class");
             //noinspection ResultOfMethodCallIgnored
             exportLoc.getParentFile().mkdirs();
             final FileOutputStream file;
@@ -273,5 +848,72 @@ public final class SarcASM {
         }
     }
 
+    private static final class ProxyClassReference extends WeakReference<Class<?>> {
+        private final int size;
+
+        private ProxyClassReference(Class<?> proxyClass, int size) {
+            super(proxyClass, PROXY_CLASS_QUEUE);
+            this.size = size;
+        }
+    }
+
+    /**
+     * Everything registered and generated for a target class.
+     *
+     * <p>
+     *     Stored with {@link ClassValue}, so it doesn't keep the target class or its class loader alive.
+     *     Its monitor is the generation lock of the class, and guards the injectors and the prewarmed proxy.
+     * </p>
+     */
+    private static final class TargetState {
+        private volatile TransformerManager manager;
+        private final Set<ProxyInjector<?>> injectors = Util.newIdentitySet();
+        private final Set<BulkProxyInjector<?>> bulkInjectors = Util.newIdentitySet();
+        private volatile Boolean inPlaceInjection;
+        private volatile boolean inPlaceTransformation;
+        private volatile boolean memoizeUntrackedProxies;
+        private volatile Class<?> proxyClass;
+        private volatile ProxyGeneration lastGeneration;
+        private PrewarmedProxy prewarmed;
+    }
+
+    private static final class ProxyGeneration {
+        private final Class<?> proxyClass;
+        private final ByteArena.Block bytes;
+        private final long epoch;
+
+        private ProxyGeneration(Class<?> proxyClass, ByteArena.Block bytes, long epoch) {
+            this.proxyClass = proxyClass;
+            this.bytes = bytes;
+            this.epoch = epoch;
+        }
+    }
+
+    private static final class PrewarmedProxy {
+        private final ProxyTransformer[] transformers;
+        private final String fingerprint;
+        private final ByteArena.Block bytes;
+
+        private PrewarmedProxy(ProxyTransformer[] transformers, String fingerprint, ByteArena.Block bytes) {
+            this.transformers = transformers;
+            this.fingerprint = fingerprint;
+            this.bytes = bytes;
+        }
+
+        private static void release(PrewarmedProxy prewarmed) {
+            if (prewarmed != null) prewarmed.bytes.release();
+        }
+    }
+
+    private static final class PatternTransformer {
+        private final Identifier phaseIdentifier;
+        private final Function<Class<?>, ? extends ProxyTransformer> factory;
+
+        private PatternTransformer(Identifier phaseIdentifier, Function<Class<?>, ? extends ProxyTransformer> factory) {
+            this.phaseIdentifier = phaseIdentifier;
+            this.factory = factory;
+        }
+    }
+
     private SarcASM() {}
 }
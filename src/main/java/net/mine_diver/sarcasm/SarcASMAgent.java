@@ -0,0 +1,182 @@
+package net.mine_diver.sarcasm;
+
+import net.mine_diver.sarcasm.transformer.*;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.security.ProtectionDomain;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.objectweb.asm.Opcodes.ASM9;
+
+/**
+ * An optional backend that transforms target classes in place instead of proxying them.
+ *
+ * <p>
+ *     Once the agent is attached, either with {@code -javaagent} or at runtime,
+ *     target classes opted in with {@link SarcASM#setInPlaceTransformation(Class, boolean)}
+ *     are retransformed themselves whenever a transformer is registered,
+ *     so no proxy instances have to be created or injected and there's no per-instance overhead.
+ *     Injectors of such classes aren't invoked, and untracked proxies are the targets themselves.
+ *     Other target classes are still proxied.
+ * </p>
+ *
+ * <p>
+ *     Transformers see the target class with only their requested methods, just like a proxy class,
+ *     and only those methods are replaced in the target class.
+ *     The rest of the class is copied as is, and stack map frames are only computed for the replaced methods.
+ *     Since retransformation can't change the class's shape,
+ *     transformers that add fields or methods fail with an {@link IllegalStateException}.
+ *     The built-in proxy transformers are skipped, since a class in place needs no constructor wrapping or "super.super" handles.
+ * </p>
+ */
+public final class SarcASMAgent {
+    private static final Predicate<ProxyTransformer> IN_PLACE = transformer ->
+            !(transformer instanceof RequestedMethodsTransformer || transformer instanceof ProxyWrapperTransformer || transformer instanceof SuperSuperTransformer);
+    private static final ThreadLocal<Throwable> FAILURE = new ThreadLocal<>();
+    private static volatile Instrumentation instrumentation;
+
+    public static void premain(String agentArgs, Instrumentation instrumentation) {
+        install(instrumentation);
+    }
+
+    public static void agentmain(String agentArgs, Instrumentation instrumentation) {
+        install(instrumentation);
+    }
+
+    public static synchronized void install(Instrumentation instrumentation) {
+        if (SarcASMAgent.instrumentation != null) return;
+        if (!instrumentation.isRetransformClassesSupported())
+            throw new IllegalStateException("SarcASM agent requires \"Can-Retransform-Classes\" to be enabled!");
+        instrumentation.addTransformer(new InPlaceTransformer(), true);
+        SarcASMAgent.instrumentation = instrumentation;
+    }
+
+    public static boolean isInstalled() {
+        return instrumentation != null;
+    }
+
+    static boolean handles(Class<?> targetClass) {
+        return SarcASM.isInPlaceTransformation(targetClass) && canRetransform(targetClass);
+    }
+
+    static boolean canRetransform(Class<?> targetClass) {
+        final Instrumentation instrumentation = SarcASMAgent.instrumentation;
+        return instrumentation != null && targetClass.getClassLoader() != null && instrumentation.isModifiableClass(targetClass);
+    }
+
+    static void retransform(Class<?> targetClass) {
+        try {
+            instrumentation.retransformClasses(targetClass);
+        } catch (final UnmodifiableClassException e) {
+            throw new RuntimeException(e);
+        }
+        // the JVM swallows exceptions thrown by class file transformers
+        final Throwable failure = FAILURE.get();
+        if (failure != null) {
+            FAILURE.remove();
+            if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+            if (failure instanceof Error) throw (Error) failure;
+            throw new RuntimeException(failure);
+        }
+    }
+
+    private static byte[] transformInPlace(TransformerManager manager, ClassLoader loader, byte[] classBytes) {
+        // retransformation starts from the original class, so this also undoes previous transformations
+        if (manager.stream().noneMatch(IN_PLACE)) return null;
+        final ClassReader reader = new ClassReader(classBytes);
+        final ClassNode targetNode = new ClassNode();
+        reader.accept(targetNode, ClassReader.SKIP_CODE);
+
+        // scoping the class to the requested methods, like a proxy class
+        final Set<String> requestedMethods = manager
+                .stream()
+                .filter(IN_PLACE)
+                .flatMap(transformer -> Arrays.stream(transformer.getRequestedMethods()))
+                .collect(Collectors.toSet());
+        final ClassNode scopedNode = new ClassNode();
+        reader.accept(new ClassVisitor(ASM9, scopedNode) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                return requestedMethods.contains(name + descriptor) ? super.visitMethod(access, name, descriptor, signature, exceptions) : null;
+            }
+        }, ClassReader.EXPAND_FRAMES);
+
+        // transforming
+        final ClassNode transformedNode = new ClassNode();
+        manager.accept(scopedNode, transformedNode, IN_PLACE);
+
+        // checking that the class keeps its shape
+        final Set<String> fields = targetNode.fields.stream().map(field -> field.name + field.desc).collect(Collectors.toSet());
+        for (final FieldNode field : transformedNode.fields)
+            if (!fields.contains(field.name + field.desc))
+                throw new IllegalStateException("Can't add field \"" + field.name + "\" to \"" + targetNode.name + "\" in place!");
+        final Set<String> methods = targetNode.methods.stream().map(method -> method.name + method.desc).collect(Collectors.toSet());
+        final Map<String, MethodNode> transformedMethods = new HashMap<>();
+        for (final MethodNode method : transformedNode.methods) {
+            if (!methods.contains(method.name + method.desc) || !requestedMethods.contains(method.name + method.desc))
+                throw new IllegalStateException("Can't add method \"" + method.name + method.desc + "\" to \"" + targetNode.name + "\" in place!");
+            transformedMethods.put(method.name + method.desc, computeFrames(targetNode, method, loader));
+        }
+
+        // merging the transformed methods back,
+        // sharing the constant pool so the rest of the class is copied without being parsed
+        final ClassWriter writer = new ClassWriter(reader, 0);
+        reader.accept(new ClassVisitor(ASM9, writer) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                final MethodNode method = transformedMethods.get(name + descriptor);
+                if (method == null) return super.visitMethod(access, name, descriptor, signature, exceptions);
+                method.accept(cv);
+                return null;
+            }
+        }, 0);
+        return writer.toByteArray();
+    }
+
+    private static MethodNode computeFrames(ClassNode targetNode, MethodNode method, ClassLoader loader) {
+        // writing the method alone, so frames are only computed for it
+        final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected ClassLoader getClassLoader() {
+                return loader;
+            }
+        };
+        writer.visit(targetNode.version, targetNode.access, targetNode.name, null, targetNode.superName, targetNode.interfaces.toArray(new String[0]));
+        method.accept(writer);
+        writer.visitEnd();
+        final ClassNode framedNode = new ClassNode();
+        new ClassReader(writer.toByteArray()).accept(framedNode, 0);
+        return framedNode.methods.get(0);
+    }
+
+    private static final class InPlaceTransformer implements ClassFileTransformer {
+        @Override
+        public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+            if (classBeingRedefined == null) return null;
+            final TransformerManager manager = SarcASM.getExistingManager(classBeingRedefined);
+            if (manager == null || !handles(classBeingRedefined)) return null;
+            try {
+                return transformInPlace(manager, loader, classfileBuffer);
+            } catch (final Throwable e) {
+                FAILURE.set(e);
+                return null;
+            }
+        }
+    }
+
+    private SarcASMAgent() {}
+}
@@ -0,0 +1,72 @@
+package net.mine_diver.sarcasm.aot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.*;
+
+/**
+ * Looks up proxy classes generated ahead of time by {@link ProxyGenerator}.
+ *
+ * <p>
+ *     Precomputed proxies are found through the target's class loader,
+ *     in {@value #MANIFEST} files mapping target class names to fingerprints,
+ *     and {@value #PROXIES}{@code <internal name>.bin} files holding the proxy bytes.
+ * </p>
+ */
+public final class PrecomputedProxies {
+    public static final String MANIFEST = "META-INF/sarcasm/proxies.properties";
+    public static final String PROXIES = "META-INF/sarcasm/proxies/";
+    private static final boolean ENABLED = !Boolean.getBoolean("sarcasm.aot.disable");
+    private static final Map<ClassLoader, Properties> MANIFESTS = new WeakHashMap<>();
+
+    /**
+     * Checks whether there's a precomputed proxy for the given target class, without computing its fingerprint.
+     *
+     * @param targetClass the target class
+     * @return the fingerprint the precomputed proxy was generated with, or null if there's none
+     */
+    public static String getFingerprint(Class<?> targetClass) {
+        if (!ENABLED || targetClass.getClassLoader() == null) return null;
+        final Properties manifest;
+        synchronized (MANIFESTS) {
+            manifest = MANIFESTS.computeIfAbsent(targetClass.getClassLoader(), PrecomputedProxies::readManifests);
+        }
+        return manifest.getProperty(targetClass.getName());
+    }
+
+    /**
+     * Reads the precomputed proxy bytes of the given target class.
+     *
+     * @param targetClass the target class
+     * @return the proxy bytes, or null if there are none
+     */
+    public static byte[] read(Class<?> targetClass) {
+        try (InputStream stream = targetClass.getClassLoader().getResourceAsStream(PROXIES + targetClass.getName().replace('.', '/') + ".bin")) {
+            if (stream == null) return null;
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            final byte[] bytes = new byte[8192];
+            int read;
+            while ((read = stream.read(bytes)) != -1) buffer.write(bytes, 0, read);
+            return buffer.toByteArray();
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Properties readManifests(ClassLoader loader) {
+        final Properties manifest = new Properties();
+        try {
+            final Enumeration<URL> manifests = loader.getResources(MANIFEST);
+            while (manifests.hasMoreElements()) try (InputStream stream = manifests.nextElement().openStream()) {
+                manifest.load(stream);
+            }
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+        return manifest;
+    }
+
+    private PrecomputedProxies() {}
+}
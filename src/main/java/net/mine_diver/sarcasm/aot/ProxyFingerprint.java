@@ -0,0 +1,110 @@
+package net.mine_diver.sarcasm.aot;
+
+import net.mine_diver.sarcasm.transformer.ProxyTransformer;
+import net.mine_diver.sarcasm.transformer.ProxyWrapperTransformer;
+import net.mine_diver.sarcasm.transformer.PureTransformer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Identifies the inputs of a proxy class generation, so precomputed proxy bytes can be reused
+ * only if they were generated from the same inputs.
+ *
+ * <p>
+ *     The fingerprint covers the proxy format, the target class file, every transformer's class file,
+ *     requested methods and version key, and all {@code sarcasm.*} system properties
+ *     except the ones that don't affect generated bytes.
+ *     Only {@link PureTransformer}s declare everything their output depends on,
+ *     so there's no fingerprint if any transformer isn't pure,
+ *     including the {@link ProxyWrapperTransformer} once constructor filters are added.
+ * </p>
+ */
+public final class ProxyFingerprint {
+    private static final String[] RUNTIME_ONLY_PROPERTIES = {
+            "sarcasm.proxyDefiner",
+            "sarcasm.aot.",
+            "sarcasm.sharedCache.",
+            "sarcasm.prewarm.",
+            "sarcasm.debug.",
+            "sarcasm.inject.",
+            "sarcasm.jfr.",
+            "sarcasm.locals.",
+            "sarcasm.methodTransformers.",
+            "sarcasm.metrics",
+            "sarcasm.transformers."
+    };
+
+    /**
+     * Computes the fingerprint of a proxy class generation.
+     *
+     * @param format the proxy class format, like the class file version
+     * @param targetClass the target class
+     * @param transformers the transformers of the target class, in order
+     * @return the fingerprint, or null if a transformer isn't pure
+     *         or a class file couldn't be read, for example of a lambda transformer
+     */
+    public static String of(String format, Class<?> targetClass, Stream<ProxyTransformer> transformers) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        update(digest, format);
+        final byte[] targetBytes = readClassBytes(targetClass);
+        if (targetBytes == null) return null;
+        digest.update(targetBytes);
+        for (final Iterator<ProxyTransformer> iterator = transformers.iterator(); iterator.hasNext(); ) {
+            final ProxyTransformer transformer = iterator.next();
+            if (!(transformer instanceof PureTransformer) || !((PureTransformer) transformer).isPure()) return null;
+            final byte[] transformerBytes = readClassBytes(transformer.getClass());
+            if (transformerBytes == null) return null;
+            update(digest, transformer.getClass().getName());
+            digest.update(transformerBytes);
+            for (final String requestedMethod : transformer.getRequestedMethods()) update(digest, requestedMethod);
+            update(digest, String.valueOf(((PureTransformer) transformer).getVersionKey()));
+        }
+        final Map<String, String> properties = new TreeMap<>();
+        System.getProperties().stringPropertyNames().stream().filter(ProxyFingerprint::affectsBytes).forEach(name -> properties.put(name, System.getProperty(name)));
+        properties.forEach((name, value) -> update(digest, name + '=' + value));
+        final StringBuilder hex = new StringBuilder();
+        for (final byte b : digest.digest()) hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return hex.toString();
+    }
+
+    private static boolean affectsBytes(String property) {
+        if (!property.startsWith("sarcasm.")) return false;
+        for (final String runtimeOnly : RUNTIME_ONLY_PROPERTIES) if (property.startsWith(runtimeOnly)) return false;
+        return true;
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static byte[] readClassBytes(Class<?> classObject) {
+        final ClassLoader loader = classObject.getClassLoader() == null ? ClassLoader.getSystemClassLoader() : classObject.getClassLoader();
+        try (InputStream classStream = loader.getResourceAsStream(classObject.getName().replace('.', '/').concat(".class"))) {
+            if (classStream == null) return null;
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            final byte[] bytes = new byte[8192];
+            int read;
+            while ((read = classStream.read(bytes)) != -1) buffer.write(bytes, 0, read);
+            return buffer.toByteArray();
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    private ProxyFingerprint() {}
+}
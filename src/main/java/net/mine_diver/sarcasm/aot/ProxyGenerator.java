@@ -0,0 +1,101 @@
+package net.mine_diver.sarcasm.aot;
+
+import net.mine_diver.sarcasm.SarcASM;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+
+/**
+ * Generates proxy classes at build time, so they don't have to be generated at startup.
+ *
+ * <p>
+ *     Usage: {@code ProxyGenerator <output jar> [--init <class>]... [--target <class>]... [jar]...}
+ * </p>
+ *
+ * <p>
+ *     Init classes are {@link Runnable}s that register the transformers, just like the application does.
+ *     Targets are the explicitly given classes and the classes in the given jars that transformers are registered for,
+ *     and the jars must be on the classpath.
+ *     The output jar has to be put on the classpath of the target classes,
+ *     and a precomputed proxy is only used if its {@link ProxyFingerprint} still matches at runtime,
+ *     so the generator should run on the same Java version as the application.
+ * </p>
+ */
+public final class ProxyGenerator {
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) throw new IllegalArgumentException("Usage: ProxyGenerator <output jar> [--init <class>]... [--target <class>]... [jar]...");
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        final List<String> initClasses = new ArrayList<>();
+        final Set<String> targetNames = new LinkedHashSet<>();
+        final List<File> jars = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) switch (args[i]) {
+            case "--init":
+                initClasses.add(args[++i]);
+                break;
+            case "--target":
+                targetNames.add(args[++i]);
+                break;
+            default:
+                jars.add(new File(args[i]));
+        }
+
+        for (final String initClass : initClasses)
+            ((Runnable) Class.forName(initClass, true, loader).getDeclaredConstructor().newInstance()).run();
+
+        for (final File jar : jars) try (JarFile file = new JarFile(jar)) {
+            targetNames.addAll(file.stream()
+                    .map(JarEntry::getName)
+                    .filter(name -> name.endsWith(".class") && !name.startsWith("META-INF/") && !name.endsWith("module-info.class"))
+                    .map(name -> name.substring(0, name.length() - ".class".length()).replace('/', '.'))
+                    .collect(Collectors.toList()));
+        }
+        final List<Class<?>> targets = targetNames.parallelStream()
+                .map(name -> load(name, loader))
+                .filter(targetClass -> targetClass != null && !targetClass.isInterface() && SarcASM.isTargeted(targetClass))
+                .collect(Collectors.toList());
+
+        // fingerprinting creates the managers, which runs the pattern transformer factories, so it stays on this thread
+        final Properties manifest = new Properties();
+        for (final Class<?> targetClass : targets) {
+            final String fingerprint = SarcASM.getProxyFingerprint(targetClass);
+            if (fingerprint != null) manifest.setProperty(targetClass.getName(), fingerprint);
+        }
+        final Map<String, byte[]> proxies = targets.parallelStream()
+                .filter(targetClass -> manifest.containsKey(targetClass.getName()))
+                .collect(Collectors.toConcurrentMap(Class::getName, SarcASM::generateProxyBytes));
+
+        final File output = new File(args[0]);
+        if (output.getParentFile() != null) output.getParentFile().mkdirs();
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(output))) {
+            jar.putNextEntry(new JarEntry(PrecomputedProxies.MANIFEST));
+            manifest.store(jar, "Generated by SarcASM");
+            jar.closeEntry();
+            for (final Map.Entry<String, byte[]> proxy : new TreeMap<>(proxies).entrySet()) {
+                jar.putNextEntry(new JarEntry(PrecomputedProxies.PROXIES + proxy.getKey().replace('.', '/') + ".bin"));
+                jar.write(proxy.getValue());
+                jar.closeEntry();
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.out.println("Generated " + proxies.size() + " proxies into " + output);
+    }
+
+    private static Class<?> load(String name, ClassLoader loader) {
+        try {
+            return Class.forName(name, false, loader);
+        } catch (final ClassNotFoundException | LinkageError e) {
+            // classes with missing dependencies can't be proxied anyway
+            return null;
+        }
+    }
+
+    private ProxyGenerator() {}
+}
@@ -0,0 +1,219 @@
+package net.mine_diver.sarcasm.aot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * A host-local proxy cache shared between processes through a memory-mapped file,
+ * enabled by setting {@code sarcasm.sharedCache.file} to the path of the file.
+ *
+ * <p>
+ *     Proxy bytes are keyed by their {@link ProxyFingerprint}, so processes generating the same proxy
+ *     can reuse each other's bytes instead of running the transformers again.
+ *     The file is append-only, writers hold an exclusive lock on it and readers a shared one
+ *     while scanning records another process has appended.
+ * </p>
+ *
+ * <p>
+ *     Each record is {@code magic, key length, bytes length, checksum, key, bytes},
+ *     where the checksum is the CRC32 of the key and the bytes.
+ *     A record left incomplete by a crashed writer is truncated by the next writer,
+ *     and a record that fails its checksum or was cut off by truncating the file is a miss,
+ *     so the proxy is generated and published again.
+ * </p>
+ *
+ * <p>
+ *     The file is mapped in windows of {@code sarcasm.sharedCache.windowSize} bytes, 64 MiB by default,
+ *     which are reused until the file grows past their end, so it isn't limited to 2 GiB.
+ *     Records that cross a window boundary are read from the file directly.
+ * </p>
+ */
+public final class SharedProxyCache {
+    private static final int MAGIC = 0x5A5CA5C1;
+    private static final int HEADER_SIZE = Integer.BYTES * 4;
+    private static final String FILE = System.getProperty("sarcasm.sharedCache.file");
+    private static final long WINDOW_SIZE = Math.max(HEADER_SIZE, Integer.getInteger("sarcasm.sharedCache.windowSize", 64 << 20));
+    private static final FileChannel CHANNEL;
+    private static final Map<String, Record> RECORDS = new ConcurrentHashMap<>();
+    private static final Map<Long, MappedByteBuffer> WINDOWS = new ConcurrentHashMap<>();
+    private static volatile long scanned;
+
+    static {
+        if (FILE == null) CHANNEL = null;
+        else try {
+            final File file = new File(FILE);
+            if (file.getParentFile() != null) file.getParentFile().mkdirs();
+            CHANNEL = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (final IOException e) {
+            throw new RuntimeException("Couldn't open the shared proxy cache \"" + FILE + "\"!", e);
+        }
+    }
+
+    public static boolean isEnabled() {
+        return CHANNEL != null;
+    }
+
+    /**
+     * Looks up proxy bytes published by this or another process.
+     *
+     * @param fingerprint the fingerprint of the proxy
+     * @return a copy of the proxy bytes, or null if no process has published them yet
+     *         or the published record is corrupted
+     */
+    public static byte[] get(String fingerprint) {
+        if (!isEnabled()) return null;
+        Record record = RECORDS.get(fingerprint);
+        if (record == null) {
+            refresh();
+            record = RECORDS.get(fingerprint);
+            if (record == null) return null;
+        }
+        // class definition only accepts arrays, so this is the only copy out of the file
+        final byte[] bytes = new byte[record.length];
+        try {
+            final long window = record.offset / WINDOW_SIZE;
+            final long windowStart = window * WINDOW_SIZE;
+            final long end = record.offset + record.length;
+            // reading a mapping past the end of a truncated file crashes instead of throwing
+            final long fileSize = CHANNEL.size();
+            if (end > fileSize) return miss(fingerprint, record);
+            if (end <= windowStart + WINDOW_SIZE) {
+                final ByteBuffer buffer = getWindow(window, end - windowStart, fileSize).duplicate();
+                buffer.position((int) (record.offset - windowStart));
+                buffer.get(bytes);
+            } else read(ByteBuffer.wrap(bytes), record.offset);
+        } catch (final IOException e) {
+            throw new RuntimeException("Couldn't read the shared proxy cache \"" + FILE + "\"!", e);
+        }
+        return checksum(fingerprint.getBytes(StandardCharsets.UTF_8), bytes) == record.checksum ? bytes : miss(fingerprint, record);
+    }
+
+    private static byte[] miss(String fingerprint, Record record) {
+        // forgetting the record, so the next put appends a good copy
+        RECORDS.remove(fingerprint, record);
+        return null;
+    }
+
+    private static int checksum(byte[] key, byte[] bytes) {
+        final CRC32 crc = new CRC32();
+        crc.update(key);
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private static MappedByteBuffer getWindow(long window, long minSize, long fileSize) throws IOException {
+        MappedByteBuffer mapping = WINDOWS.get(window);
+        if (mapping == null || mapping.capacity() < minSize) {
+            // mapping everything scanned so far, so the window is only remapped once records past it are read,
+            // but not past the end of the file, since mapping a writable channel would extend it
+            final long windowStart = window * WINDOW_SIZE;
+            final long size = Math.min(WINDOW_SIZE, Math.max(minSize, Math.min(scanned, fileSize) - windowStart));
+            mapping = CHANNEL.map(FileChannel.MapMode.READ_ONLY, windowStart, size);
+            WINDOWS.put(window, mapping);
+        }
+        return mapping;
+    }
+
+    /**
+     * Publishes proxy bytes for other processes, unless they're already published.
+     *
+     * @param fingerprint the fingerprint of the proxy
+     * @param bytes the proxy bytes
+     */
+    public static synchronized void put(String fingerprint, byte[] bytes) {
+        if (!isEnabled() || RECORDS.containsKey(fingerprint)) return;
+        final byte[] key = fingerprint.getBytes(StandardCharsets.UTF_8);
+        try {
+            final FileLock lock = CHANNEL.lock();
+            try {
+                final long size = CHANNEL.size();
+                scan(size);
+                if (RECORDS.containsKey(fingerprint)) return;
+                if (scanned < size) CHANNEL.truncate(scanned);
+                final ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + key.length + bytes.length);
+                record.putInt(MAGIC).putInt(key.length).putInt(bytes.length).putInt(checksum(key, bytes)).put(key).put(bytes).flip();
+                long position = scanned;
+                while (record.hasRemaining()) position += CHANNEL.write(record, position);
+                scan(position);
+            } finally {
+                lock.release();
+            }
+        } catch (final IOException e) {
+            throw new RuntimeException("Couldn't write to the shared proxy cache \"" + FILE + "\"!", e);
+        }
+    }
+
+    private static synchronized void refresh() {
+        try {
+            if (CHANNEL.size() == scanned) return;
+            final FileLock lock = CHANNEL.lock(0, Long.MAX_VALUE, true);
+            try {
+                scan(CHANNEL.size());
+            } finally {
+                lock.release();
+            }
+        } catch (final IOException e) {
+            throw new RuntimeException("Couldn't read the shared proxy cache \"" + FILE + "\"!", e);
+        }
+    }
+
+    private static void scan(long size) throws IOException {
+        if (size < scanned) {
+            // the file was truncated, so the records and mappings past its end are gone
+            RECORDS.clear();
+            WINDOWS.clear();
+            scanned = 0;
+        }
+        if (size == scanned) return;
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        long position = scanned;
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            read(header, position);
+            header.flip();
+            if (header.getInt() != MAGIC) break;
+            final int keyLength = header.getInt();
+            final int length = header.getInt();
+            final int checksum = header.getInt();
+            final long end = position + HEADER_SIZE + keyLength + length;
+            if (keyLength < 0 || length < 0 || end > size) break;
+            final byte[] key = new byte[keyLength];
+            read(ByteBuffer.wrap(key), position + HEADER_SIZE);
+            // a key is only published again if its earlier record failed the checksum, so the later one wins
+            RECORDS.put(new String(key, StandardCharsets.UTF_8), new Record(position + HEADER_SIZE + keyLength, length, checksum));
+            position = end;
+        }
+        scanned = position;
+    }
+
+    private static void read(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int read = CHANNEL.read(buffer, position);
+            if (read < 0) throw new IOException("Unexpected end of the shared proxy cache \"" + FILE + "\"!");
+            position += read;
+        }
+    }
+
+    private static final class Record {
+        private final long offset;
+        private final int length;
+        private final int checksum;
+
+        private Record(long offset, int length, int checksum) {
+            this.offset = offset;
+            this.length = length;
+            this.checksum = checksum;
+        }
+    }
+
+    private SharedProxyCache() {}
+}
@@ -0,0 +1,79 @@
+package net.mine_diver.sarcasm.injector;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Injects proxies for many target instances at once,
+ * for example every element of a registry's array or list.
+ *
+ * <p>
+ *     Proxies for all targets are created in parallel before the injector is invoked,
+ *     and a target held by several injectors at once gets the same proxy instance in all of them.
+ * </p>
+ *
+ * @param <T> the target type
+ */
+public interface BulkProxyInjector<T> {
+    /**
+     * Replaces elements of the given array with their proxies in place.
+     *
+     * @param array the array of targets
+     * @return the injector
+     * @param <T> the target type
+     */
+    static <T> BulkProxyInjector<T> ofArray(final T[] array) {
+        Objects.requireNonNull(array);
+        return new BulkProxyInjector<T>() {
+            @Override
+            public List<T> getTargetInstances() {
+                return Arrays.asList(array);
+            }
+
+            @Override
+            public void inject(List<T> proxyInstances) {
+                proxyInstances.toArray(array);
+            }
+        };
+    }
+
+    /**
+     * Replaces elements of the given list with their proxies in place.
+     * The list must support {@link List#set(int, Object)} and must not change size concurrently.
+     *
+     * @param list the list of targets
+     * @return the injector
+     * @param <T> the target type
+     */
+    static <T> BulkProxyInjector<T> ofList(final List<T> list) {
+        Objects.requireNonNull(list);
+        return new BulkProxyInjector<T>() {
+            @Override
+            public List<T> getTargetInstances() {
+                return list;
+            }
+
+            @Override
+            public void inject(List<T> proxyInstances) {
+                for (int i = 0; i < proxyInstances.size(); i++) list.set(i, proxyInstances.get(i));
+            }
+        };
+    }
+
+    /**
+     * Same as {@link ProxyInjector#getTargetInstance()}, this must provide direct access
+     * to the targets, and mustn't be cached. Elements may be null, and are then skipped.
+     *
+     * @return the target instances this injector is working with
+     */
+    List<T> getTargetInstances();
+
+    /**
+     * Receives the proxies of all target instances at once.
+     *
+     * @param proxyInstances the proxy instances, in the same order as {@link #getTargetInstances()}.
+     *                       Null targets have null proxies
+     */
+    void inject(List<T> proxyInstances);
+}
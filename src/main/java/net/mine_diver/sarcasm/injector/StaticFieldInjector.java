@@ -0,0 +1,90 @@
+package net.mine_diver.sarcasm.injector;
+
+import net.mine_diver.sarcasm.metrics.Metrics;
+import net.mine_diver.sarcasm.util.Util;
+import net.mine_diver.sarcasm.util.collection.ClassValueCache;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Injects the proxy into a static field, including static final ones.
+ *
+ * <p>
+ *     The field is resolved once to its static base and offset,
+ *     so reading the target and injecting the proxy don't go through reflection.
+ *     Injectors are cached per field, so declaring the same field twice returns the same injector.
+ *     The cache is kept per owner class with {@link ClassValue}, so it doesn't keep owners or their class loaders alive.
+ * </p>
+ *
+ * <p>
+ *     Resolving the field initializes its owner, and the owner's static initializer may declare injectors itself.
+ * </p>
+ *
+ * <p>
+ *     Note that the JIT may have already folded the old value of a static final field
+ *     into compiled code, so only code that's compiled later is guaranteed to see the proxy.
+ * </p>
+ *
+ * @param <T> the target type
+ */
+public final class StaticFieldInjector<T> implements ProxyInjector<T> {
+    private static final ClassValueCache<Map<String, StaticFieldInjector<?>>> INJECTORS = Metrics.registerCache("cache.staticFieldInjectors", new ClassValueCache<>(owner -> new ConcurrentHashMap<>()));
+
+    /**
+     * Returns an injector for the given static field.
+     *
+     * @param targetClass the target class
+     * @param owner the class declaring the field
+     * @param fieldName the name of the field
+     * @return the injector for the field
+     * @param <T> the target type
+     * @throws IllegalArgumentException if the field doesn't exist, isn't static, or can't hold the target class
+     */
+    public static <T> StaticFieldInjector<T> of(final Class<T> targetClass, final Class<?> owner, final String fieldName) {
+        final Field field;
+        try {
+            field = owner.getDeclaredField(Objects.requireNonNull(fieldName));
+        } catch (final NoSuchFieldException e) {
+            throw new IllegalArgumentException("Couldn't find field \"" + fieldName + "\" in class \"" + owner.getName() + "\"!", e);
+        }
+        if (!Modifier.isStatic(field.getModifiers()))
+            throw new IllegalArgumentException("Field \"" + fieldName + "\" in class \"" + owner.getName() + "\" isn't static!");
+        if (field.getType().isPrimitive() || !field.getType().isAssignableFrom(targetClass))
+            throw new IllegalArgumentException("Field \"" + fieldName + "\" in class \"" + owner.getName() + "\" can't hold an instance of \"" + targetClass.getName() + "\"!");
+        final Map<String, StaticFieldInjector<?>> injectors = INJECTORS.get(owner);
+        StaticFieldInjector<?> injector = injectors.get(fieldName);
+        if (injector == null) {
+            // initializing outside the map, since the owner's static initializer may declare injectors too
+            Util.UNSAFE.ensureClassInitialized(owner);
+            final StaticFieldInjector<?> resolved = new StaticFieldInjector<>(Util.UNSAFE.staticFieldBase(field), Util.UNSAFE.staticFieldOffset(field));
+            injector = injectors.putIfAbsent(fieldName, resolved);
+            if (injector == null) injector = resolved;
+        }
+        @SuppressWarnings("unchecked")
+        final StaticFieldInjector<T> tInjector = (StaticFieldInjector<T>) injector;
+        return tInjector;
+    }
+
+    private final Object base;
+    private final long offset;
+
+    private StaticFieldInjector(final Object base, final long offset) {
+        this.base = base;
+        this.offset = offset;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T getTargetInstance() {
+        return (T) Util.UNSAFE.getObjectVolatile(base, offset);
+    }
+
+    @Override
+    public void inject(final T proxyInstance) {
+        Util.UNSAFE.putObjectVolatile(base, offset, proxyInstance);
+    }
+}
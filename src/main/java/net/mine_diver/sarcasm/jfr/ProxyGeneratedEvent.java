@@ -0,0 +1,24 @@
+package net.mine_diver.sarcasm.jfr;
+
+import jdk.jfr.*;
+
+@Name("net.mine_diver.sarcasm.ProxyGenerated")
+@Label("Proxy Generated")
+@Category("SarcASM")
+@Description("A proxy class was generated and defined, or reused")
+@StackTrace(false)
+final class ProxyGeneratedEvent extends Event {
+    @Label("Target Class")
+    Class<?> targetClass;
+
+    @Label("Phases")
+    String phases;
+
+    @Label("Bytes")
+    @DataAmount
+    int bytes;
+
+    @Label("Reused")
+    @Description("Whether the regenerated bytes were the same, so the previous proxy class was reused")
+    boolean reused;
+}
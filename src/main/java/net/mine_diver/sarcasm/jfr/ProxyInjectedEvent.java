@@ -0,0 +1,18 @@
+package net.mine_diver.sarcasm.jfr;
+
+import jdk.jfr.*;
+
+@Name("net.mine_diver.sarcasm.ProxyInjected")
+@Label("Proxy Injected")
+@Category("SarcASM")
+@Description("Proxies were created for the outdated instances of a target class and injected")
+final class ProxyInjectedEvent extends Event {
+    @Label("Target Class")
+    Class<?> targetClass;
+
+    @Label("Instances")
+    int instances;
+
+    @Label("In Place")
+    boolean inPlace;
+}
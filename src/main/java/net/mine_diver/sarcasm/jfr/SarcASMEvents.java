@@ -0,0 +1,109 @@
+package net.mine_diver.sarcasm.jfr;
+
+import net.mine_diver.sarcasm.transformer.ProxyTransformer;
+import net.mine_diver.sarcasm.util.Identifier;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Emits Java Flight Recorder events for SarcASM's work, if the runtime has JFR.
+ *
+ * <p>
+ *     Events are begun with the {@code begin} methods, which return an opaque handle, or null if the event
+ *     is disabled in the recording settings or JFR isn't available, so callers don't have to load event classes.
+ *     Event fields are only computed if the recording settings accept the event.
+ *     Untracked wraps happen often, so their event is disabled unless the recording settings enable it,
+ *     and its threshold can be raised to only record slow wraps.
+ *     Setting {@code sarcasm.jfr.untrackedWrapSampling} to n additionally records only one in n wraps.
+ *     Setting {@code sarcasm.jfr.disable} disables all events.
+ * </p>
+ */
+public final class SarcASMEvents {
+    private static final boolean AVAILABLE = !Boolean.getBoolean("sarcasm.jfr.disable") && isJfrAvailable();
+    private static final int UNTRACKED_WRAP_SAMPLING = Math.max(1, Integer.getInteger("sarcasm.jfr.untrackedWrapSampling", 1));
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, SarcASMEvents.class.getClassLoader());
+            return true;
+        } catch (final ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    public static Object beginProxyGenerated() {
+        if (!AVAILABLE) return null;
+        final ProxyGeneratedEvent event = new ProxyGeneratedEvent();
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    public static void commitProxyGenerated(Object handle, Class<?> targetClass, List<Identifier> phases, int bytes, boolean reused) {
+        final ProxyGeneratedEvent event = (ProxyGeneratedEvent) handle;
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.targetClass = targetClass;
+        event.phases = phases.stream().map(Identifier::toString).collect(Collectors.joining(", "));
+        event.bytes = bytes;
+        event.reused = reused;
+        event.commit();
+    }
+
+    public static Object beginTransformerApplied() {
+        if (!AVAILABLE) return null;
+        final TransformerAppliedEvent event = new TransformerAppliedEvent();
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    public static void commitTransformerApplied(Object handle, String proxyClass, List<? extends ProxyTransformer> transformers, Identifier phase) {
+        final TransformerAppliedEvent event = (TransformerAppliedEvent) handle;
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.proxyClass = proxyClass.replace('/', '.');
+        event.transformers = transformers.stream().map(transformer -> transformer.getClass().getName()).collect(Collectors.joining(", "));
+        event.phase = phase == null ? null : phase.toString();
+        event.commit();
+    }
+
+    public static Object beginProxyInjected() {
+        if (!AVAILABLE) return null;
+        final ProxyInjectedEvent event = new ProxyInjectedEvent();
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    public static void commitProxyInjected(Object handle, Class<?> targetClass, int instances, boolean inPlace) {
+        final ProxyInjectedEvent event = (ProxyInjectedEvent) handle;
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.targetClass = targetClass;
+        event.instances = instances;
+        event.inPlace = inPlace;
+        event.commit();
+    }
+
+    public static Object beginUntrackedWrap() {
+        if (!AVAILABLE) return null;
+        final UntrackedWrapEvent event = new UntrackedWrapEvent();
+        if (!event.isEnabled() || UNTRACKED_WRAP_SAMPLING > 1 && ThreadLocalRandom.current().nextInt(UNTRACKED_WRAP_SAMPLING) != 0) return null;
+        event.begin();
+        return event;
+    }
+
+    public static void commitUntrackedWrap(Object handle, Class<?> targetClass, String outcome) {
+        final UntrackedWrapEvent event = (UntrackedWrapEvent) handle;
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.targetClass = targetClass;
+        event.outcome = outcome;
+        event.commit();
+    }
+
+    private SarcASMEvents() {}
+}
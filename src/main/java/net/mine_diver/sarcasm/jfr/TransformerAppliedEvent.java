@@ -0,0 +1,19 @@
+package net.mine_diver.sarcasm.jfr;
+
+import jdk.jfr.*;
+
+@Name("net.mine_diver.sarcasm.TransformerApplied")
+@Label("Transformer Applied")
+@Category("SarcASM")
+@Description("Transformers were applied to a proxy class, transformers running in a single pass are reported together")
+@StackTrace(false)
+final class TransformerAppliedEvent extends Event {
+    @Label("Proxy Class")
+    String proxyClass;
+
+    @Label("Transformers")
+    String transformers;
+
+    @Label("Phase")
+    String phase;
+}
@@ -0,0 +1,17 @@
+package net.mine_diver.sarcasm.jfr;
+
+import jdk.jfr.*;
+
+@Name("net.mine_diver.sarcasm.UntrackedWrap")
+@Label("Untracked Wrap")
+@Category("SarcASM")
+@Description("An untracked proxy wrap, either a memoized hit, a miss creating a proxy, or negative if the target isn't proxyable")
+@StackTrace(false)
+@Enabled(false)
+final class UntrackedWrapEvent extends Event {
+    @Label("Target Class")
+    Class<?> targetClass;
+
+    @Label("Outcome")
+    String outcome;
+}
@@ -0,0 +1,24 @@
+package net.mine_diver.sarcasm.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A striped counter, cheap to update from many threads at once.
+ */
+public final class Counter {
+    private final LongAdder count = new LongAdder();
+
+    Counter() {}
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    public long sum() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,130 @@
+package net.mine_diver.sarcasm.metrics;
+
+import net.mine_diver.sarcasm.util.collection.CacheStatistics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * The registry of SarcASM's metrics, enabled by the {@code sarcasm.metrics} system property
+ * and exposed through JMX as {@value #OBJECT_NAME}.
+ *
+ * <p>
+ *     Call sites check {@link #ENABLED} before measuring anything,
+ *     so disabled metrics are folded away by the JIT and cost nothing.
+ * </p>
+ *
+ * <p>
+ *     Attributes are named after the metric, with a suffix for metrics that have several values:
+ *     {@code .count}, {@code .totalNanos} and {@code .maxNanos} for timers,
+ *     {@code .size}, {@code .hits}, {@code .misses} and {@code .hitRate} for caches.
+ * </p>
+ */
+public final class Metrics {
+    public static final boolean ENABLED = Boolean.getBoolean("sarcasm.metrics");
+    public static final String OBJECT_NAME = "net.mine_diver.sarcasm:type=Metrics";
+    private static final ConcurrentMap<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Timer> TIMERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, CacheStatistics> CACHES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Supplier<?>> GAUGES = new ConcurrentHashMap<>();
+    static {
+        if (ENABLED) try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), new ObjectName(OBJECT_NAME));
+        } catch (final JMException e) {
+            throw new RuntimeException("Couldn't register the SarcASM metrics MBean!", e);
+        }
+    }
+
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, key -> new Counter());
+    }
+
+    public static Timer timer(String name) {
+        return TIMERS.computeIfAbsent(name, key -> new Timer());
+    }
+
+    /**
+     * Exposes the size and hit rate of the given cache, if metrics are enabled.
+     *
+     * @param name the metric name
+     * @param cache the cache
+     * @return the cache, for registering it where it's declared
+     * @param <C> the cache type
+     */
+    public static <C extends CacheStatistics> C registerCache(String name, C cache) {
+        if (ENABLED) CACHES.put(name, cache);
+        return cache;
+    }
+
+    /**
+     * Exposes a value that's computed when it's read, if metrics are enabled.
+     *
+     * @param name the metric name
+     * @param gauge the value supplier
+     */
+    public static void registerGauge(String name, Supplier<?> gauge) {
+        if (ENABLED) GAUGES.put(name, gauge);
+    }
+
+    /**
+     * @return the current value of every metric, sorted by name
+     */
+    public static Map<String, Object> snapshot() {
+        final Map<String, Object> snapshot = new TreeMap<>();
+        COUNTERS.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+        TIMERS.forEach((name, timer) -> {
+            snapshot.put(name + ".count", timer.getCount());
+            snapshot.put(name + ".totalNanos", timer.getTotalNanos());
+            snapshot.put(name + ".maxNanos", timer.getMaxNanos());
+        });
+        CACHES.forEach((name, cache) -> {
+            snapshot.put(name + ".size", cache.size());
+            snapshot.put(name + ".hits", cache.getHitCount());
+            snapshot.put(name + ".misses", cache.getMissCount());
+            snapshot.put(name + ".hitRate", cache.getHitRate());
+        });
+        GAUGES.forEach((name, gauge) -> snapshot.put(name, gauge.get()));
+        return snapshot;
+    }
+
+    // computes a single attribute of the snapshot, so reading it doesn't compute every other metric
+    static Object get(String attribute) {
+        final Supplier<?> gauge = GAUGES.get(attribute);
+        if (gauge != null) return gauge.get();
+        final int separator = attribute.lastIndexOf('.');
+        if (separator >= 0) {
+            final String name = attribute.substring(0, separator);
+            final String suffix = attribute.substring(separator + 1);
+            final CacheStatistics cache = CACHES.get(name);
+            if (cache != null) switch (suffix) {
+                case "size":
+                    return cache.size();
+                case "hits":
+                    return cache.getHitCount();
+                case "misses":
+                    return cache.getMissCount();
+                case "hitRate":
+                    return cache.getHitRate();
+            }
+            final Timer timer = TIMERS.get(name);
+            if (timer != null) switch (suffix) {
+                case "count":
+                    return timer.getCount();
+                case "totalNanos":
+                    return timer.getTotalNanos();
+                case "maxNanos":
+                    return timer.getMaxNanos();
+            }
+        }
+        final Counter counter = COUNTERS.get(attribute);
+        return counter == null ? null : counter.sum();
+    }
+
+    private Metrics() {}
+}
@@ -0,0 +1,53 @@
+package net.mine_diver.sarcasm.metrics;
+
+import javax.management.*;
+
+/**
+ * Exposes {@link Metrics#snapshot()} as read-only attributes, which change as metrics are created.
+ * Reading attributes only computes the requested metrics.
+ */
+final class MetricsMBean implements DynamicMBean {
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        final Object value = Metrics.get(attribute);
+        if (value == null) throw new AttributeNotFoundException("Unknown metric \"" + attribute + "\"!");
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        final AttributeList list = new AttributeList();
+        for (final String attribute : attributes) {
+            final Object value = Metrics.get(attribute);
+            if (value != null) list.add(new Attribute(attribute, value));
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metric \"" + attribute.getName() + "\" is read-only!");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName), "SarcASM metrics have no operations!");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        return new MBeanInfo(
+                Metrics.class.getName(),
+                "SarcASM metrics",
+                Metrics.snapshot().entrySet().stream().map(entry -> new MBeanAttributeInfo(
+                        entry.getKey(), entry.getValue().getClass().getName(), entry.getKey(), true, false, false
+                )).toArray(MBeanAttributeInfo[]::new),
+                null, null, null
+        );
+    }
+}
@@ -1,12 +1,20 @@
 package net.mine_diver.sarcasm.transformer;
 
+import net.mine_diver.sarcasm.jfr.SarcASMEvents;
+import net.mine_diver.sarcasm.metrics.Metrics;
 import net.mine_diver.sarcasm.util.Identifier;
+import net.mine_diver.sarcasm.util.InsnIndex;
+import net.mine_diver.sarcasm.util.Locals;
+import net.mine_diver.sarcasm.util.Util;
 import net.mine_diver.sarcasm.util.collection.toposort.NodeSorting;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.tree.ClassNode;
 
 import java.util.*;
 import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static net.mine_diver.sarcasm.SarcASM.initProxyFor;
@@ -15,7 +23,10 @@ import static net.mine_diver.sarcasm.SarcASM.invalidateProxyClass;
 class ArrayBackedTransformerManager<T> implements TransformerManager {
     private final Object lock = new Object();
     private ProxyTransformer[] transformers = new ProxyTransformer[0];
+    private Map<ProxyTransformer, Identifier> transformerPhases = Collections.emptyMap();
 
+    private final Set<ProxyTransformer> disabled = Util.newIdentitySet();
+    private final TransformerMemo memo = new TransformerMemo();
     private final Map<Identifier, TransformerPhaseData> phases = new IdentityHashMap<>();
     private final List<TransformerPhaseData> sortedPhases = new ArrayList<>();
 
@@ -34,24 +45,143 @@ class ArrayBackedTransformerManager<T> implements TransformerManager {
 
         synchronized (lock) {
             getOrCreatePhase(phaseIdentifier, true).addTransformer(transformer);
-            rebuildInvoker(transformers.length + 1);
+            rebuildInvoker();
+            regenerate(initProxy);
+        }
+    }
 
-            invalidateProxyClass(targetClass);
-            if (initProxy && hasInjectors.getAsBoolean())
-                initProxyFor(targetClass);
+    @Override
+    public boolean unregister(ProxyTransformer transformer, boolean initProxy) {
+        Objects.requireNonNull(transformer, "Tried to unregister a null transformer!");
+
+        synchronized (lock) {
+            boolean removed = false;
+            for (TransformerPhaseData phase : sortedPhases) removed |= phase.removeTransformer(transformer);
+            if (!removed) return false;
+            disabled.remove(transformer);
+            memo.invalidate(transformer);
+            rebuildInvoker();
+            regenerate(initProxy);
+            return true;
         }
     }
 
+    @Override
+    public void setEnabled(ProxyTransformer transformer, boolean enabled, boolean initProxy) {
+        Objects.requireNonNull(transformer, "Tried to toggle a null transformer!");
+
+        synchronized (lock) {
+            if (sortedPhases.stream().noneMatch(phase -> phase.contains(transformer)))
+                throw new IllegalArgumentException("Tried to toggle transformer \"" + transformer.getClass().getName() + "\" that isn't registered for \"" + targetClass.getName() + "\"!");
+            if (enabled ? !disabled.remove(transformer) : !disabled.add(transformer)) return;
+            rebuildInvoker();
+            regenerate(initProxy);
+        }
+    }
+
+    @Override
+    public boolean isEnabled(ProxyTransformer transformer) {
+        synchronized (lock) {
+            return !disabled.contains(transformer) && sortedPhases.stream().anyMatch(phase -> phase.contains(transformer));
+        }
+    }
+
+    private void regenerate(boolean initProxy) {
+        invalidateProxyClass(targetClass);
+        if (initProxy && hasInjectors.getAsBoolean())
+            initProxyFor(targetClass);
+    }
+
     @Override
     public void forEach(Consumer<ProxyTransformer> consumer) {
         for (ProxyTransformer transformer : transformers) consumer.accept(transformer);
     }
 
+    @Override
+    public void accept(ClassNode proxyNode, ClassVisitor writer) {
+        accept(proxyNode, writer, this.transformers, transformerPhases, memo);
+    }
+
+    @Override
+    public void accept(ClassNode node, ClassVisitor writer, Predicate<? super ProxyTransformer> filter) {
+        accept(node, writer, Arrays.stream(this.transformers).filter(filter).toArray(ProxyTransformer[]::new), transformerPhases, memo);
+    }
+
+    private static void accept(ClassNode proxyNode, ClassVisitor writer, ProxyTransformer[] transformers, Map<ProxyTransformer, Identifier> phases, TransformerMemo memo) {
+        final TransformerMemo.Chain[] chains = TransformerMemo.chains(transformers);
+        ClassNode node = proxyNode;
+        int i = 0;
+        while (i < transformers.length) {
+            if (transformers[i] instanceof ProxyMethodTransformer) {
+                // method transformers run together on each method, until one of them adds methods
+                final List<ProxyMethodTransformer> methodTransformers = new ArrayList<>();
+                final int first = i;
+                while (i < transformers.length && transformers[i] instanceof ProxyMethodTransformer) {
+                    final ProxyMethodTransformer methodTransformer = (ProxyMethodTransformer) transformers[i++];
+                    methodTransformers.add(methodTransformer);
+                    if (methodTransformer.getClassEffects().contains(ProxyMethodTransformer.ClassEffect.ADDS_METHODS)) break;
+                }
+                final long start = Metrics.ENABLED ? System.nanoTime() : 0;
+                final Object event = SarcASMEvents.beginTransformerApplied();
+                ClassContext.transformMethods(node, methodTransformers, memo, Arrays.copyOfRange(chains, first, i), true);
+                applied(node.name, methodTransformers, phases, start, event);
+                continue;
+            }
+            if (!(transformers[i] instanceof ProxyVisitorTransformer)) {
+                final long start = Metrics.ENABLED ? System.nanoTime() : 0;
+                final Object event = SarcASMEvents.beginTransformerApplied();
+                transformers[i].transform(node);
+                applied(node.name, Collections.singletonList(transformers[i]), phases, start, event);
+                i++;
+                continue;
+            }
+            int end = i;
+            while (end < transformers.length && transformers[end] instanceof ProxyVisitorTransformer) end++;
+            // only materializing the class if there's a tree transformer after the chain
+            final ClassNode transformed = end < transformers.length ? new ClassNode() : null;
+            ClassVisitor chain = transformed == null ? writer : transformed;
+            for (int j = end - 1; j >= i; j--)
+                chain = ((ProxyVisitorTransformer) transformers[j]).createVisitor(chain);
+            final long start = Metrics.ENABLED ? System.nanoTime() : 0;
+            final Object event = SarcASMEvents.beginTransformerApplied();
+            node.accept(chain);
+            applied(node.name, Arrays.asList(transformers).subList(i, end), phases, start, event);
+            release(node);
+            if (transformed == null) return;
+            node = transformed;
+            i = end;
+        }
+        node.accept(writer);
+        release(node);
+    }
+
+    // nodes that were passed on don't need their indexes anymore, and the caches would keep them alive
+    private static void release(ClassNode node) {
+        InsnIndex.release(node);
+        Locals.release(node);
+    }
+
+    // transformers that run together, like visitor chains, can only be timed together
+    private static void applied(String proxyName, List<? extends ProxyTransformer> transformers, Map<ProxyTransformer, Identifier> phases, long start, Object event) {
+        final Identifier phase = phases.get(transformers.get(0));
+        if (Metrics.ENABLED) {
+            final long nanos = System.nanoTime() - start;
+            Metrics.timer("transformer." + transformers.stream().map(transformer -> transformer.getClass().getName()).collect(Collectors.joining("+"))).record(nanos);
+            if (phase != null) Metrics.timer("phase." + phase).record(nanos);
+        }
+        if (event != null) SarcASMEvents.commitTransformerApplied(event, proxyName, transformers, phase);
+    }
+
     @Override
     public Stream<ProxyTransformer> stream() {
         return Arrays.stream(transformers);
     }
 
+    @Override
+    public Identifier getPhase(ProxyTransformer transformer) {
+        return transformerPhases.get(transformer);
+    }
+
     private TransformerPhaseData getOrCreatePhase(Identifier id, boolean sortIfCreate) {
         TransformerPhaseData phase = phases.get(id);
 
@@ -68,23 +198,35 @@ class ArrayBackedTransformerManager<T> implements TransformerManager {
         return phase;
     }
 
-    private void rebuildInvoker(int newLength) {
+    private void rebuildInvoker() {
         // Rebuild transformers.
-        if (sortedPhases.size() == 1) {
+        if (sortedPhases.size() == 1 && disabled.isEmpty()) {
             // Special case with a single phase: use the array of the phase directly.
             transformers = sortedPhases.get(0).transformers;
         } else {
+            int newLength = 0;
+            for (TransformerPhaseData existingPhase : sortedPhases)
+                for (ProxyTransformer transformer : existingPhase.transformers)
+                    if (!disabled.contains(transformer)) newLength++;
             ProxyTransformer[] newTransformers = new ProxyTransformer[newLength];
             int newTransformersIndex = 0;
 
             for (TransformerPhaseData existingPhase : sortedPhases) {
-                int length = existingPhase.transformers.length;
-                System.arraycopy(existingPhase.transformers, 0, newTransformers, newTransformersIndex, length);
-                newTransformersIndex += length;
+                if (disabled.isEmpty()) {
+                    int length = existingPhase.transformers.length;
+                    System.arraycopy(existingPhase.transformers, 0, newTransformers, newTransformersIndex, length);
+                    newTransformersIndex += length;
+                } else for (ProxyTransformer transformer : existingPhase.transformers)
+                    if (!disabled.contains(transformer)) newTransformers[newTransformersIndex++] = transformer;
             }
 
             transformers = newTransformers;
         }
+        final Map<ProxyTransformer, Identifier> phases = new IdentityHashMap<>();
+        for (TransformerPhaseData phase : sortedPhases)
+            for (ProxyTransformer transformer : phase.transformers)
+                if (!disabled.contains(transformer)) phases.put(transformer, phase.id);
+        transformerPhases = phases;
     }
 
     @Override
@@ -98,7 +240,7 @@ class ArrayBackedTransformerManager<T> implements TransformerManager {
             TransformerPhaseData second = getOrCreatePhase(secondPhase, false);
             TransformerPhaseData.link(first, second);
             NodeSorting.sort(this.sortedPhases, "transformer phases", Comparator.comparing(data -> data.id));
-            rebuildInvoker(transformers.length);
+            rebuildInvoker();
         }
     }
 }
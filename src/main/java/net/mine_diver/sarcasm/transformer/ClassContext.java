@@ -0,0 +1,143 @@
+package net.mine_diver.sarcasm.transformer;
+
+import net.mine_diver.sarcasm.transformer.ProxyMethodTransformer.ClassEffect;
+import net.mine_diver.sarcasm.util.InsnIndex;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InnerClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * The view of the proxy class a {@link ProxyMethodTransformer} gets while transforming a single method.
+ *
+ * <p>
+ *     Members added through the context are collected per method and added to the proxy class
+ *     in method order once all methods are transformed, so the result doesn't depend on scheduling.
+ *     Members that were already added by another method are skipped.
+ * </p>
+ *
+ * <p>
+ *     If the transformers up to a method transformer are all {@linkplain PureTransformer pure},
+ *     what they did to each method and the members they added for it are memoized,
+ *     and replayed on the next generation instead of running them again.
+ * </p>
+ */
+public final class ClassContext {
+    private static final int MIN_PARALLEL_METHODS = Integer.getInteger("sarcasm.methodTransformers.minParallelMethods", 16);
+    private static final int MIN_PARALLEL_INSNS = Integer.getInteger("sarcasm.methodTransformers.minParallelInsns", 4096);
+
+    static void transformMethods(ClassNode node, List<ProxyMethodTransformer> transformers, TransformerMemo memo, TransformerMemo.Chain[] chains, boolean parallel) {
+        final MethodNode[] methods = node.methods.toArray(new MethodNode[0]);
+        final ClassContext[] contexts = new ClassContext[methods.length];
+        final InsnIndex index = InsnIndex.of(node);
+        // wrapping instruction lists before any method is modified concurrently,
+        // after that each method only locks its own part of the index
+        index.refresh();
+        IntStream indices = IntStream.range(0, methods.length);
+        // small classes aren't worth the fork/join overhead
+        if (parallel && methods.length >= MIN_PARALLEL_METHODS && countInsns(node.methods) >= MIN_PARALLEL_INSNS) indices = indices.parallel();
+        // only the state after the last transformer of a pure chain is memoized
+        int last = chains.length - 1;
+        while (last >= 0 && chains[last] == null) last--;
+        final int lastPure = last;
+        indices.forEach(i -> {
+            final ClassContext context = new ClassContext(node, index);
+            final MethodNode method = methods[i];
+            final String name = method.name;
+            final String desc = method.desc;
+            for (int j = memo == null ? 0 : memo.replay(chains, method, context); j < transformers.size(); j++) {
+                context.transformer = transformers.get(j);
+                context.transformer.transformMethod(context, method);
+                if (j == lastPure && memo != null) memo.store(chains[j], name, desc, method, context);
+            }
+            contexts[i] = context;
+        });
+        for (final ClassContext context : contexts) context.apply();
+    }
+
+    private static int countInsns(List<MethodNode> methods) {
+        int insns = 0;
+        for (final MethodNode method : methods) insns += method.instructions.size();
+        return insns;
+    }
+
+    private final ClassNode node;
+    private final InsnIndex index;
+    private ProxyMethodTransformer transformer;
+    List<FieldNode> fields;
+    List<MethodNode> methods;
+    List<InnerClassNode> innerClasses;
+
+    private ClassContext(ClassNode node, InsnIndex index) {
+        this.node = node;
+        this.index = index;
+    }
+
+    /**
+     * The proxy class node, which must only be read.
+     * Other methods of the proxy class may be modified concurrently.
+     *
+     * @return the proxy class node
+     */
+    public ClassNode getClassNode() {
+        return node;
+    }
+
+    /**
+     * The instruction index of the proxy class.
+     *
+     * <p>Only queries scoped to the method being transformed are safe,
+     * since other methods may be modified concurrently.
+     * They only lock the entries of that method, so they don't contend with other methods.
+     *
+     * @return the instruction index of the proxy class
+     */
+    public InsnIndex getInsnIndex() {
+        return index;
+    }
+
+    public String getName() {
+        return node.name;
+    }
+
+    public String getSuperName() {
+        return node.superName;
+    }
+
+    public void addField(FieldNode field) {
+        checkEffect(ClassEffect.ADDS_FIELDS);
+        (fields == null ? fields = new ArrayList<>() : fields).add(Objects.requireNonNull(field));
+    }
+
+    public void addMethod(MethodNode method) {
+        checkEffect(ClassEffect.ADDS_METHODS);
+        (methods == null ? methods = new ArrayList<>() : methods).add(Objects.requireNonNull(method));
+    }
+
+    public void addInnerClass(InnerClassNode innerClass) {
+        checkEffect(ClassEffect.ADDS_INNER_CLASSES);
+        (innerClasses == null ? innerClasses = new ArrayList<>() : innerClasses).add(Objects.requireNonNull(innerClass));
+    }
+
+    private void checkEffect(ClassEffect effect) {
+        if (!transformer.getClassEffects().contains(effect))
+            throw new IllegalStateException("Transformer \"" + transformer.getClass().getName() + "\" didn't declare " + effect + " in its class effects!");
+    }
+
+    private void apply() {
+        if (fields != null) for (final FieldNode field : fields)
+            if (node.fields.stream().noneMatch(existing -> existing.name.equals(field.name)))
+                node.fields.add(field);
+        if (methods != null) for (final MethodNode method : methods)
+            if (node.methods.stream().noneMatch(existing -> existing.name.equals(method.name) && existing.desc.equals(method.desc)))
+                node.methods.add(method);
+        if (innerClasses != null) for (final InnerClassNode innerClass : innerClasses)
+            if (node.innerClasses.stream().noneMatch(existing -> existing.name.equals(innerClass.name)))
+                node.innerClasses.add(innerClass);
+    }
+}
@@ -0,0 +1,73 @@
+package net.mine_diver.sarcasm.transformer;
+
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A transformer that only works with one proxy method at a time.
+ *
+ * <p>
+ *     Consecutive method transformers are run together on each method of the proxy class,
+ *     and different methods are transformed in parallel if the proxy class has at least
+ *     {@code sarcasm.methodTransformers.minParallelMethods} methods (16 by default)
+ *     with at least {@code sarcasm.methodTransformers.minParallelInsns} instructions in total (4096 by default).
+ *     Class-scoped transformers
+ *     act as barriers, they always see the result of all previous transformers.
+ * </p>
+ *
+ * <p>
+ *     A method transformer must not modify the class node or any method other than the one
+ *     it was given. Changes to the class have to go through the {@link ClassContext}
+ *     and have to be declared in {@link #getClassEffects()} beforehand.
+ * </p>
+ */
+public interface ProxyMethodTransformer extends ProxyTransformer {
+    /**
+     * Same as with {@link #transform(ClassNode)}, the transformation
+     * has to be deterministic. It may run concurrently with
+     * transformations of other methods of the same proxy class.
+     *
+     * @param context the proxy class context
+     * @param method the proxy method to transform
+     */
+    void transformMethod(ClassContext context, MethodNode method);
+
+    /**
+     * @return the kinds of changes this transformer makes to the proxy class through the {@link ClassContext}
+     */
+    default Set<ClassEffect> getClassEffects() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Transforms all methods of the proxy class sequentially.
+     *
+     * <p>Only used if the transformer is invoked directly, the manager fans out across methods.
+     *
+     * @param node the proxy class node
+     */
+    @Override
+    default void transform(ClassNode node) {
+        ClassContext.transformMethods(node, Collections.singletonList(this), null, new TransformerMemo.Chain[1], false);
+    }
+
+    enum ClassEffect {
+        ADDS_FIELDS,
+
+        /**
+         * Added methods are only visible to transformers that run after this one,
+         * so method transformers declaring this effect end a parallel run.
+         */
+        ADDS_METHODS,
+
+        ADDS_INNER_CLASSES;
+
+        public static Set<ClassEffect> of(ClassEffect first, ClassEffect... rest) {
+            return Collections.unmodifiableSet(EnumSet.of(first, rest));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package net.mine_diver.sarcasm.transformer;
+
+import net.mine_diver.sarcasm.util.ASMHelper;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * A streaming alternative to tree-based proxy transformers.
+ *
+ * <p>
+ *     Consecutive visitor transformers, including ones in different phases,
+ *     are fused by the transformer manager into a single visitor chain,
+ *     so the proxy class is only materialized as a {@link ClassNode}
+ *     when a tree-based transformer has to see it.
+ * </p>
+ */
+public interface ProxyVisitorTransformer extends ProxyTransformer {
+    /**
+     * Same as with {@link #transform(ClassNode)},
+     * the created visitor has to transform the proxy class deterministically.
+     *
+     * @param next the visitor the transformed proxy class has to be passed to
+     * @return a visitor transforming the proxy class
+     */
+    ClassVisitor createVisitor(ClassVisitor next);
+
+    /**
+     * Runs the visitor over a tree representation of the proxy class.
+     *
+     * <p>Only used if the transformer is invoked directly, the manager always streams.
+     *
+     * @param node the proxy class node
+     */
+    @Override
+    default void transform(ClassNode node) {
+        final ClassNode transformed = new ClassNode();
+        node.accept(createVisitor(transformed));
+        ASMHelper.copy(transformed, node);
+    }
+}
@@ -1,13 +1,17 @@
 package net.mine_diver.sarcasm.transformer;
 
 import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.metrics.Metrics;
 import net.mine_diver.sarcasm.util.ASMHelper;
 import net.mine_diver.sarcasm.util.Identifier;
-import net.mine_diver.sarcasm.util.collection.IdentityCache;
+import net.mine_diver.sarcasm.util.InsnIndex;
+import net.mine_diver.sarcasm.util.collection.ClassValueCache;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
 
 import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -35,7 +39,7 @@ import static org.objectweb.asm.Opcodes.*;
  *
  * @param <T> type of the class an instance of the transformer is registered for
  */
-public class ProxyWrapperTransformer<T> implements ProxyTransformer {
+public class ProxyWrapperTransformer<T> implements ProxyTransformer, PureTransformer {
     private static final Predicate<MethodNode> NON_STATIC_NON_FINAL_NON_CONSTRUCTOR = methodNode ->
             !Modifier.isStatic(methodNode.access)
                     && !Modifier.isFinal(methodNode.access)
@@ -56,9 +60,9 @@ public class ProxyWrapperTransformer<T> implements ProxyTransformer {
         return wrapper;
     };
 
-    private static Predicate<MethodInsnNode> globalConstructorFilter;
+    private static volatile ConstructorFilter globalConstructorFilter;
 
-    private static final IdentityCache<Class<?>, ProxyWrapperTransformer<?>> CACHE = new IdentityCache<>(ProxyWrapperTransformer::new);
+    private static final ClassValueCache<ProxyWrapperTransformer<?>> CACHE = Metrics.registerCache("cache.proxyWrapperTransformers", new ClassValueCache<>(ProxyWrapperTransformer::new));
     public static final Identifier PHASE = SarcASM.NAMESPACE.id("proxy_wrapper");
 
     public static <T> ProxyWrapperTransformer<T> of(Class<T> targetClass) {
@@ -66,68 +70,78 @@ public class ProxyWrapperTransformer<T> implements ProxyTransformer {
         return (ProxyWrapperTransformer<T>) CACHE.get(targetClass);
     }
 
-    public static void addGlobalConstructorFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<MethodInsnNode> filter) {
-        globalConstructorFilter = addConstructorFilter(globalConstructorFilter, combiner, filter);
+    public static synchronized void addGlobalConstructorFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<MethodInsnNode> filter) {
+        globalConstructorFilter = addConstructorFilter(globalConstructorFilter, combiner, filter, false);
     }
 
-    public static void addGlobalOwnerFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<String> filter) {
+    public static synchronized void addGlobalOwnerFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<String> filter) {
         globalConstructorFilter = addOwnerFilter(globalConstructorFilter, combiner, filter);
     }
 
-    public static void addGlobalTypeFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<Type> filter) {
+    public static synchronized void addGlobalTypeFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<Type> filter) {
         globalConstructorFilter = addTypeFilter(globalConstructorFilter, combiner, filter);
     }
 
-    public static void addGlobalClassNameFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<String> filter) {
+    public static synchronized void addGlobalClassNameFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<String> filter) {
         globalConstructorFilter = addClassNameFilter(globalConstructorFilter, combiner, filter);
     }
 
-    public static void addGlobalClassFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<Class<?>> filter) {
+    public static synchronized void addGlobalClassFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<Class<?>> filter) {
         globalConstructorFilter = addClassFilter(globalConstructorFilter, combiner, filter);
     }
 
-    private static Predicate<MethodInsnNode> addConstructorFilter(
-            Predicate<MethodInsnNode> instance,
+    private static ConstructorFilter addConstructorFilter(
+            ConstructorFilter instance,
             BinaryOperator<Predicate<MethodInsnNode>> combiner,
-            Predicate<MethodInsnNode> filter
+            Predicate<MethodInsnNode> filter,
+            boolean ownerOnly
     ) {
-        return instance == null ? filter : combiner.apply(instance, filter);
+        return instance == null ?
+                new ConstructorFilter(filter, ownerOnly) :
+                new ConstructorFilter(combiner.apply(instance.filter, filter), instance.ownerOnly && ownerOnly);
     }
 
-    private static Predicate<MethodInsnNode> addOwnerFilter(
-            Predicate<MethodInsnNode> instance,
+    private static ConstructorFilter addOwnerFilter(
+            ConstructorFilter instance,
             BinaryOperator<Predicate<MethodInsnNode>> combiner,
             Predicate<String> filter
     ) {
-        return addConstructorFilter(instance, combiner, compose(filter, methodInsnNode -> methodInsnNode.owner));
+        return addConstructorFilter(instance, combiner, compose(filter, methodInsnNode -> methodInsnNode.owner), true);
     }
 
-    private static Predicate<MethodInsnNode> addTypeFilter(
-            Predicate<MethodInsnNode> instance,
+    private static ConstructorFilter addTypeFilter(
+            ConstructorFilter instance,
             BinaryOperator<Predicate<MethodInsnNode>> combiner,
             Predicate<Type> filter
     ) {
         return addOwnerFilter(instance, combiner, compose(filter, Type::getObjectType));
     }
 
-    private static Predicate<MethodInsnNode> addClassNameFilter(
-            Predicate<MethodInsnNode> instance,
+    private static ConstructorFilter addClassNameFilter(
+            ConstructorFilter instance,
             BinaryOperator<Predicate<MethodInsnNode>> combiner,
             Predicate<String> filter
     ) {
         return addTypeFilter(instance, combiner, compose(filter, Type::getClassName));
     }
 
-    private static Predicate<MethodInsnNode> addClassFilter(
-            Predicate<MethodInsnNode> instance,
+    private static ConstructorFilter addClassFilter(
+            ConstructorFilter instance,
             BinaryOperator<Predicate<MethodInsnNode>> combiner,
             Predicate<Class<?>> filter
     ) {
-        return addClassNameFilter(instance, combiner, compose(filter, soften(Class::forName)));
+        // resolved classes are cached per filter, so they're only held as long as the filter is
+        final Map<String, Class<?>> resolvedClasses = new ConcurrentHashMap<>();
+        return addClassNameFilter(instance, combiner, compose(filter, className -> resolveClass(resolvedClasses, className)));
+    }
+
+    private static Class<?> resolveClass(Map<String, Class<?>> resolvedClasses, String className) {
+        // not initializing, since the class filter only needs the class object itself
+        return resolvedClasses.computeIfAbsent(className, soften(name -> Class.forName(name, false, ProxyWrapperTransformer.class.getClassLoader())));
     }
 
     private final String[] methods;
-    private Predicate<MethodInsnNode> constructorFilter;
+    private volatile ConstructorFilter constructorFilter;
 
     private ProxyWrapperTransformer(Class<T> targetClass) {
         methods = ASMHelper.readClassNode(targetClass).methods
@@ -148,36 +162,90 @@ public class ProxyWrapperTransformer<T> implements ProxyTransformer {
 
     @Override
     public void transform(ClassNode node) {
-        node.methods
+        final ConstructorFilter globalConstructorFilter = ProxyWrapperTransformer.globalConstructorFilter;
+        final ConstructorFilter constructorFilter = this.constructorFilter;
+        final InsnIndex index = InsnIndex.of(node);
+        index.getByOpcode(INVOKESPECIAL)
                 .stream()
-                .filter(NON_STATIC_NON_FINAL_NON_CONSTRUCTOR)
-                .forEach(methodNode -> StreamSupport
-                        .stream(methodNode.instructions.spliterator(), false)
-                        .filter(CONSTRUCTOR)
-                        .map(insn -> (MethodInsnNode) insn)
-                        .filter(globalConstructorFilter == null ? methodInsnNode -> true : globalConstructorFilter)
-                        .filter(constructorFilter == null ? methodInsnNode -> true : constructorFilter)
-                        .forEach(methodInsnNode -> methodNode.instructions.insert(methodInsnNode, WRAPPER_FACTORY.apply(methodInsnNode)))
-                );
+                .filter(CONSTRUCTOR)
+                .map(insn -> (MethodInsnNode) insn)
+                .filter(methodInsnNode -> NON_STATIC_NON_FINAL_NON_CONSTRUCTOR.test(index.getMethod(methodInsnNode)))
+                .filter(methodInsnNode -> (globalConstructorFilter == null || globalConstructorFilter.test(methodInsnNode))
+                        && (constructorFilter == null || constructorFilter.test(methodInsnNode)))
+                .forEach(methodInsnNode -> index.getMethod(methodInsnNode).instructions.insert(methodInsnNode, WRAPPER_FACTORY.apply(methodInsnNode)));
+    }
+
+    /**
+     * Whether any global constructor filter or any filter of this transformer is set.
+     *
+     * <p>
+     *     Filters are arbitrary predicates, so proxies transformed with them
+     *     can't be matched with ones generated by another process.
+     * </p>
+     *
+     * @return true if the transformer's output depends on constructor filters
+     */
+    public boolean isFiltered() {
+        return globalConstructorFilter != null || constructorFilter != null;
     }
 
-    public void addConstructorFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<MethodInsnNode> filter) {
-        constructorFilter = addConstructorFilter(constructorFilter, combiner, filter);
+    @Override
+    public Object getVersionKey() {
+        return 0; // the wrapped constructors only depend on the target class, unless filtered
     }
 
-    public void addOwnerFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<String> filter) {
+    /**
+     * @return false if {@linkplain #isFiltered() filtered}, since filters can't be versioned
+     */
+    @Override
+    public boolean isPure() {
+        return !isFiltered();
+    }
+
+    public synchronized void addConstructorFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<MethodInsnNode> filter) {
+        constructorFilter = addConstructorFilter(constructorFilter, combiner, filter, false);
+    }
+
+    public synchronized void addOwnerFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<String> filter) {
         constructorFilter = addOwnerFilter(constructorFilter, combiner, filter);
     }
 
-    public void addTypeFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<Type> filter) {
+    public synchronized void addTypeFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<Type> filter) {
         constructorFilter = addTypeFilter(constructorFilter, combiner, filter);
     }
 
-    public void addClassNameFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<String> filter) {
+    public synchronized void addClassNameFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<String> filter) {
         constructorFilter = addClassNameFilter(constructorFilter, combiner, filter);
     }
 
-    public void addClassFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<Class<?>> filter) {
+    public synchronized void addClassFilter(BinaryOperator<Predicate<MethodInsnNode>> combiner, Predicate<Class<?>> filter) {
         constructorFilter = addClassFilter(constructorFilter, combiner, filter);
     }
+
+    /**
+     * An immutable compiled filter chain.
+     *
+     * <p>
+     *     If every filter in the chain only depends on the constructor's owner,
+     *     the decision is memoized per owner internal name. Otherwise, the chain
+     *     is evaluated for every constructor instruction.
+     * </p>
+     */
+    private static final class ConstructorFilter {
+        private final Predicate<MethodInsnNode> filter;
+        private final boolean ownerOnly;
+        private final Map<String, Boolean> decisions;
+
+        private ConstructorFilter(Predicate<MethodInsnNode> filter, boolean ownerOnly) {
+            this.filter = filter;
+            this.ownerOnly = ownerOnly;
+            decisions = ownerOnly ? new ConcurrentHashMap<>() : null;
+        }
+
+        private boolean test(MethodInsnNode constructor) {
+            return ownerOnly ?
+                    decisions.computeIfAbsent(constructor.owner, owner -> filter.test(constructor)) :
+                    filter.test(constructor);
+        }
+    }
 }
@@ -0,0 +1,41 @@
+package net.mine_diver.sarcasm.transformer;
+
+import net.mine_diver.sarcasm.aot.ProxyFingerprint;
+
+/**
+ * Marks a transformer whose output only depends on its input and its version key.
+ *
+ * <p>
+ *     If every transformer up to a {@link ProxyMethodTransformer} is pure,
+ *     the manager remembers what they did to each method, keyed by the method's name and descriptor
+ *     and by the chain of transformers and their version keys, and replays it
+ *     instead of running them again when the proxy class is regenerated.
+ *     The output of a pure method transformer must only depend on the method it transforms.
+ * </p>
+ *
+ * <p>
+ *     The version key is also part of the {@link ProxyFingerprint},
+ *     so proxy bytes generated ahead of time, by another process or by the previous run
+ *     are only reused if the transformer was configured the same way.
+ * </p>
+ */
+public interface PureTransformer {
+    /**
+     * The version key must change whenever the transformer's output
+     * for the same input could change, for example if it's configurable.
+     *
+     * @return the version key, compared with {@link Object#equals(Object)} when memoizing
+     *         and by its {@link String#valueOf(Object) string representation} in fingerprints
+     */
+    Object getVersionKey();
+
+    /**
+     * Lets a transformer that's usually pure opt out while it's configured in a way
+     * its version key can't reflect.
+     *
+     * @return whether the transformer is currently pure
+     */
+    default boolean isPure() {
+        return true;
+    }
+}
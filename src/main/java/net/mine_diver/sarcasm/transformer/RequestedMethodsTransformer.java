@@ -1,25 +1,31 @@
 package net.mine_diver.sarcasm.transformer;
 
 import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.metrics.Metrics;
 import net.mine_diver.sarcasm.util.ASMHelper;
 import net.mine_diver.sarcasm.util.Identifier;
-import net.mine_diver.sarcasm.util.collection.IdentityCache;
+import net.mine_diver.sarcasm.util.collection.ClassValueCache;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
-import org.objectweb.asm.tree.MethodNode;
 
 import java.util.Arrays;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import static org.objectweb.asm.Opcodes.ASM9;
+
 /**
  * The transformer that usually runs first
  * and adds all requested methods into the proxy class.
  *
  * @param <T> type of the class an instance of the transformer is registered for
  */
-public final class RequestedMethodsTransformer<T> implements ProxyTransformer {
-    private static final IdentityCache<Class<?>, RequestedMethodsTransformer<?>> CACHE = new IdentityCache<>(RequestedMethodsTransformer::new);
+public final class RequestedMethodsTransformer<T> implements ProxyVisitorTransformer, PureTransformer {
+    private static final ClassValueCache<RequestedMethodsTransformer<?>> CACHE = Metrics.registerCache("cache.requestedMethodsTransformers", new ClassValueCache<>(RequestedMethodsTransformer::new));
     public static final Identifier PHASE = SarcASM.NAMESPACE.id("requested_methods");
 
     public static <T> RequestedMethodsTransformer<T> of(Class<T> targetClass) {
@@ -28,11 +34,11 @@ public final class RequestedMethodsTransformer<T> implements ProxyTransformer {
     }
 
     private final Class<T> targetClass;
-    private final ClassNode targetNode;
+    private final byte[] targetBytes;
 
     private RequestedMethodsTransformer(Class<T> targetClass) {
         this.targetClass = targetClass;
-        targetNode = ASMHelper.readClassNode(targetClass);
+        targetBytes = ASMHelper.readClassBytes(targetClass);
     }
 
     @Override
@@ -40,23 +46,72 @@ public final class RequestedMethodsTransformer<T> implements ProxyTransformer {
         return new String[0]; // only working with methods that other transformers requested
     }
 
+    @Override
+    public Object getVersionKey() {
+        return 0; // requested methods are copied as is from the target class
+    }
+
     @Override
     public void transform(ClassNode node) {
+        acceptRequestedMethods(node, Type.getObjectType(node.name).getDescriptor());
+    }
+
+    @Override
+    public ClassVisitor createVisitor(ClassVisitor next) {
+        return new ClassVisitor(ASM9, next) {
+            private String proxyDesc;
+
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                proxyDesc = Type.getObjectType(name).getDescriptor();
+                super.visit(version, access, name, signature, superName, interfaces);
+            }
+
+            @Override
+            public void visitEnd() {
+                acceptRequestedMethods(cv, proxyDesc);
+                super.visitEnd();
+            }
+        };
+    }
+
+    /**
+     * Streams the requested methods straight from the target class bytes into the proxy class.
+     *
+     * <p>
+     *     Every generation reads its own methods, so nothing is shared between concurrent generations
+     *     and no intermediate copies are made.
+     * </p>
+     *
+     * @param proxy the visitor of the proxy class
+     * @param proxyDesc the descriptor of the proxy class
+     */
+    private void acceptRequestedMethods(ClassVisitor proxy, String proxyDesc) {
         // initializing requested methods
         final Set<String> requestedMethods = SarcASM
                 .streamTransformers(targetClass)
                 .flatMap(transformer -> Arrays.stream(transformer.getRequestedMethods()))
                 .collect(Collectors.toSet());
         if (requestedMethods.isEmpty()) return;
-        targetNode.methods
-                .stream()
-                .filter(targetMethod -> requestedMethods.remove(ASMHelper.toTarget(targetMethod)))
-                .forEach(methodNode -> {
-                    final MethodNode proxyMethod = ASMHelper.clone(methodNode);
-                    if (proxyMethod.localVariables.size() > 0)
-                        proxyMethod.localVariables.get(0).desc = Type.getObjectType(node.name).getDescriptor();
-                    node.methods.add(proxyMethod);
-                });
+        new ClassReader(targetBytes).accept(new ClassVisitor(ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                if (!requestedMethods.remove(name + descriptor)) return null;
+                final MethodVisitor proxyMethod = proxy.visitMethod(access, name, descriptor, signature, exceptions);
+                return proxyMethod == null ? null : new MethodVisitor(ASM9, proxyMethod) {
+                    private boolean firstLocal = true;
+
+                    @Override
+                    public void visitLocalVariable(String name, String descriptor, String signature, Label start, Label end, int index) {
+                        if (firstLocal) {
+                            firstLocal = false;
+                            descriptor = proxyDesc;
+                        }
+                        super.visitLocalVariable(name, descriptor, signature, start, end, index);
+                    }
+                };
+            }
+        }, ClassReader.EXPAND_FRAMES);
         if (!requestedMethods.isEmpty())
             throw new IllegalArgumentException("Couldn't find some requested methods for class \"" + targetClass.getName() + "\", such as: " + requestedMethods);
     }
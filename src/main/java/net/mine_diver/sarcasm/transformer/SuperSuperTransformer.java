@@ -1,20 +1,22 @@
 package net.mine_diver.sarcasm.transformer;
 
 import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.metrics.Metrics;
 import net.mine_diver.sarcasm.util.ASMHelper;
 import net.mine_diver.sarcasm.util.Identifier;
+import net.mine_diver.sarcasm.util.InsnIndex;
 import net.mine_diver.sarcasm.util.Util;
-import net.mine_diver.sarcasm.util.collection.IdentityCache;
+import net.mine_diver.sarcasm.util.collection.ClassValueCache;
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
 
-import java.lang.invoke.MethodHandle;
-import java.lang.invoke.MethodHandles;
-import java.lang.invoke.MethodType;
-import java.util.ArrayList;
+import java.lang.invoke.*;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.stream.StreamSupport;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.objectweb.asm.Opcodes.*;
 
@@ -23,11 +25,32 @@ import static org.objectweb.asm.Opcodes.*;
  * to a method handle hack that calls "super.super",
  * allowing to access members of the target's super class.
  *
+ * <p>
+ *     By default, each call is dispatched through a static {@link MethodHandle} field
+ *     that's initialized in the proxy's static initializer.
+ *     {@link Dispatch#INVOKEDYNAMIC} instead replaces each call with an {@code invokedynamic}
+ *     instruction that's linked lazily on its first invocation, see {@link #bootstrap(MethodHandles.Lookup, String, MethodType, Class)}.
+ * </p>
+ *
  * @param <T> type of the class an instance of the transformer is registered for
  */
-public final class SuperSuperTransformer<T> implements ProxyTransformer {
-    private static final IdentityCache<Class<?>, SuperSuperTransformer<?>> CACHE = new IdentityCache<>(SuperSuperTransformer::new);
+public final class SuperSuperTransformer<T> implements ProxyTransformer, PureTransformer {
+    private static final ClassValueCache<SuperSuperTransformer<?>> CACHE = Metrics.registerCache("cache.superSuperTransformers", new ClassValueCache<>(SuperSuperTransformer::new));
     public static final Identifier PHASE = SarcASM.NAMESPACE.id("super_super");
+    private static final Dispatch DEFAULT_DISPATCH = Boolean.getBoolean("sarcasm.superSuper.invokedynamic") ? Dispatch.INVOKEDYNAMIC : Dispatch.METHOD_HANDLE;
+    private static final Handle BOOTSTRAP = new Handle(
+            H_INVOKESTATIC,
+            Type.getInternalName(SuperSuperTransformer.class),
+            "bootstrap",
+            Type.getMethodDescriptor(
+                    Type.getType(CallSite.class),
+                    Type.getType(MethodHandles.Lookup.class),
+                    Type.getType(String.class),
+                    Type.getType(MethodType.class),
+                    Type.getType(Class.class)
+            ),
+            false
+    );
 
     public static <T> SuperSuperTransformer<T> of(Class<T> targetClass) {
         //noinspection unchecked
@@ -35,9 +58,15 @@ public final class SuperSuperTransformer<T> implements ProxyTransformer {
     }
 
     private final ClassNode targetNode;
+    private final Set<String> targetMethods;
+    private volatile Dispatch dispatch = DEFAULT_DISPATCH;
 
     private SuperSuperTransformer(Class<T> targetClass) {
         targetNode = ASMHelper.readClassNode(targetClass);
+        targetMethods = targetNode.methods
+                .stream()
+                .map(ASMHelper::toTarget)
+                .collect(Collectors.toSet());
     }
 
     @Override
@@ -45,130 +74,68 @@ public final class SuperSuperTransformer<T> implements ProxyTransformer {
         return new String[0]; // only working with methods that other transformers requested
     }
 
+    /**
+     * Sets the way "super.super" calls are dispatched in proxies generated after this call.
+     *
+     * <p>
+     *     Proxy classes that are already defined keep their dispatch mode,
+     *     until they're regenerated, for example by {@link SarcASM#invalidateProxyClass(Class)}.
+     *     The dispatch mode is the {@linkplain #getVersionKey() version key} of the transformer,
+     *     so proxy bytes generated with another mode ahead of time or by another process aren't reused.
+     * </p>
+     *
+     * @param dispatch the dispatch mode
+     */
+    public void setDispatch(Dispatch dispatch) {
+        this.dispatch = Objects.requireNonNull(dispatch);
+    }
+
+    @Override
+    public Object getVersionKey() {
+        return dispatch;
+    }
+
     @Override
     public void transform(ClassNode node) {
         // super.super implementation
         final Map<String, FieldNode> methodHandles = new HashMap<>();
-        new ArrayList<>(node.methods)
-                .forEach(methodNode -> {
-                    StreamSupport
-                            .stream(methodNode.instructions.spliterator(), false)
-                            .filter(abstractInsnNode -> abstractInsnNode.getType() == AbstractInsnNode.METHOD_INSN)
-                            .map(abstractInsnNode -> ((MethodInsnNode) abstractInsnNode))
-                            .filter(methodInsnNode -> methodInsnNode.owner.equals(targetNode.superName)
-                                    && targetNode.methods
-                                    .stream()
-                                    .anyMatch(methodNode1 -> methodInsnNode.name.equals(methodNode1.name)
-                                            && methodInsnNode.desc.equals(methodNode1.desc))
-                            )
-                            .forEach(methodInsnNode -> {
-                                final String target = ASMHelper.toTarget(methodInsnNode);
-                                if (!methodHandles.containsKey(target)) {
-                                    final FieldNode methodHandle = new FieldNode(
-                                            ACC_PRIVATE | ACC_STATIC | ACC_FINAL,
-                                            "SARCASM$super_" + methodInsnNode.name + methodInsnNode.desc
-                                                    .replaceAll("/", "|")
-                                                    .replaceAll(";", ":"),
-                                            Type.getDescriptor(MethodHandle.class),
-                                            null, null
-                                    );
-                                    methodHandles.put(target, methodHandle);
-                                    node.fields.add(methodHandle);
-                                    final InsnList mhInit = new InsnList();
-                                    mhInit.add(new FieldInsnNode(
-                                            GETSTATIC,
-                                            Type.getInternalName(Util.class),
-                                            "IMPL_LOOKUP",
-                                            Type.getDescriptor(MethodHandles.Lookup.class))
-                                    );
-                                    mhInit.add(new LdcInsnNode(Type.getObjectType(targetNode.superName)));
-                                    mhInit.add(new LdcInsnNode(methodInsnNode.name));
-                                    mhInit.add(new LdcInsnNode(Type.getMethodType(methodInsnNode.desc)));
-                                    mhInit.add(new LdcInsnNode(Type.getObjectType(targetNode.name)));
-                                    mhInit.add(new MethodInsnNode(
-                                            INVOKEVIRTUAL,
-                                            Type.getInternalName(MethodHandles.Lookup.class),
-                                            "findSpecial",
-                                            Type.getMethodDescriptor(
-                                                    Type.getType(MethodHandle.class),
-                                                    Type.getType(Class.class),
-                                                    Type.getType(String.class),
-                                                    Type.getType(MethodType.class),
-                                                    Type.getType(Class.class)
-                                            )
-                                    ));
-                                    mhInit.add(new FieldInsnNode(PUTSTATIC, node.name, methodHandle.name, methodHandle.desc));
-                                    final InsnList clinitInsns = node.methods
-                                            .stream()
-                                            .filter(methodNode1 -> methodNode1.name.equals("<clinit>"))
-                                            .findFirst()
-                                            .orElseGet(() -> {
-                                                final MethodNode clinit = new MethodNode(ACC_STATIC, "<clinit>", "()V", null, null);
-                                                clinit.instructions.add(new InsnNode(RETURN));
-                                                node.methods.add(clinit);
-                                                return clinit;
-                                            }).instructions;
-                                    clinitInsns.insertBefore(clinitInsns.getLast(), mhInit);
-                                }
-                                final FieldNode methodHandle = methodHandles.get(target);
-                                final InsnList superCall = new InsnList();
-                                final LabelNode startTry = new LabelNode();
-                                superCall.add(startTry);
-                                final Type[] argumentTypes = Util.concat(Type.getObjectType(node.name), Type.getArgumentTypes(methodInsnNode.desc));
-                                int curArg = methodNode.maxLocals;
-                                for (final Type argumentType : argumentTypes)
-                                    ASMHelper.addLocalVariable(methodNode, argumentType.getDescriptor());
-                                for (int i = argumentTypes.length - 1; i >= 0; i--)
-                                    superCall.add(new VarInsnNode(argumentTypes[i].getOpcode(ISTORE), methodNode.maxLocals - argumentTypes.length + i));
-                                superCall.add(new FieldInsnNode(GETSTATIC, node.name, methodHandle.name, methodHandle.desc));
-                                for (Type argumentType : argumentTypes)
-                                    superCall.add(new VarInsnNode(argumentType.getOpcode(ILOAD), curArg++));
-                                superCall.add(new MethodInsnNode(
-                                        INVOKEVIRTUAL,
-                                        Type.getInternalName(MethodHandle.class),
-                                        "invoke",
-                                        Type.getMethodDescriptor(
-                                                Type.getReturnType(methodInsnNode.desc),
-                                                argumentTypes
-                                        )
-                                ));
-                                final LabelNode endTry = new LabelNode();
-                                superCall.add(endTry);
-                                final LabelNode exitTry = new LabelNode();
-                                superCall.add(new JumpInsnNode(GOTO, exitTry));
-                                final LabelNode handleTry = new LabelNode();
-                                superCall.add(handleTry);
-                                final LocalVariableNode throwable = ASMHelper.addLocalVariable(
-                                        methodNode,
-                                        ASMHelper.allocateLocal(methodNode),
-                                        "e",
-                                        Type.getDescriptor(Throwable.class),
-                                        handleTry,
-                                        exitTry
-                                );
-                                superCall.add(new VarInsnNode(ASTORE, throwable.index));
-                                superCall.add(new TypeInsnNode(NEW, Type.getInternalName(RuntimeException.class)));
-                                superCall.add(new InsnNode(DUP));
-                                superCall.add(new VarInsnNode(ALOAD, throwable.index));
-                                superCall.add(new MethodInsnNode(
-                                        INVOKESPECIAL,
-                                        Type.getInternalName(RuntimeException.class),
-                                        "<init>",
-                                        Type.getMethodDescriptor(
-                                                Type.VOID_TYPE,
-                                                Type.getType(Throwable.class)
-                                        )
-                                ));
-                                superCall.add(new InsnNode(ATHROW));
-                                superCall.add(exitTry);
-                                methodNode.instructions.insertBefore(methodInsnNode, superCall);
-                                methodNode.instructions.remove(methodInsnNode);
-                                methodNode.tryCatchBlocks.add(new TryCatchBlockNode(startTry, endTry, handleTry, Type.getInternalName(Throwable.class)));
-                            });
-                    if (methodNode.localVariables.size() > 0)
-                        methodNode.localVariables.get(0).start = ASMHelper.getStartLabel(methodNode);
-                });
-        if (!methodHandles.isEmpty())
+        boolean invokeDynamic = false;
+        final InsnIndex index = InsnIndex.of(node);
+        final Set<MethodNode> rewrittenMethods = Util.newIdentitySet();
+        MethodNode clinit = null;
+        final Dispatch dispatch = this.dispatch;
+        for (final MethodInsnNode methodInsnNode : index.getMethodInsns(targetNode.superName)) {
+            if (!targetMethods.contains(methodInsnNode.name + methodInsnNode.desc)) continue;
+            final MethodNode methodNode = index.getMethod(methodInsnNode);
+            rewrittenMethods.add(methodNode);
+            if (dispatch == Dispatch.INVOKEDYNAMIC) {
+                methodNode.instructions.set(methodInsnNode, createSuperInvokeDynamic(methodInsnNode));
+                invokeDynamic = true;
+                continue;
+            }
+            final String target = ASMHelper.toTarget(methodInsnNode);
+            FieldNode methodHandle = methodHandles.get(target);
+            if (methodHandle == null) {
+                methodHandle = new FieldNode(
+                        ACC_PRIVATE | ACC_STATIC | ACC_FINAL,
+                        "SARCASM$super_" + methodInsnNode.name + methodInsnNode.desc
+                                .replace('/', '|')
+                                .replace(';', ':'),
+                        Type.getDescriptor(MethodHandle.class),
+                        null, null
+                );
+                methodHandles.put(target, methodHandle);
+                node.fields.add(methodHandle);
+                if (clinit == null) clinit = getOrCreateClinit(node);
+                clinit.instructions.insertBefore(clinit.instructions.getLast(), createMethodHandleInit(node, methodInsnNode, methodHandle));
+            }
+            methodNode.instructions.insertBefore(methodInsnNode, createSuperCall(node, methodNode, methodInsnNode, methodHandle));
+            methodNode.instructions.remove(methodInsnNode);
+        }
+        for (final MethodNode methodNode : rewrittenMethods)
+            if (methodNode.localVariables.size() > 0)
+                methodNode.localVariables.get(0).start = ASMHelper.getStartLabel(methodNode);
+        if (!methodHandles.isEmpty() || invokeDynamic)
             node.innerClasses.add(new InnerClassNode(
                     "java/lang/invoke/MethodHandles$Lookup",
                     "java/lang/invoke/MethodHandles",
@@ -176,4 +143,144 @@ public final class SuperSuperTransformer<T> implements ProxyTransformer {
                     ACC_PUBLIC | ACC_STATIC | ACC_FINAL
             ));
     }
+
+    private static MethodNode getOrCreateClinit(ClassNode node) {
+        for (final MethodNode methodNode : node.methods)
+            if (methodNode.name.equals("<clinit>")) return methodNode;
+        final MethodNode clinit = new MethodNode(ACC_STATIC, "<clinit>", "()V", null, null);
+        clinit.instructions.add(new InsnNode(RETURN));
+        node.methods.add(clinit);
+        return clinit;
+    }
+
+    private InsnList createMethodHandleInit(ClassNode node, MethodInsnNode methodInsnNode, FieldNode methodHandle) {
+        final InsnList mhInit = new InsnList();
+        mhInit.add(new FieldInsnNode(
+                GETSTATIC,
+                Type.getInternalName(Util.class),
+                "IMPL_LOOKUP",
+                Type.getDescriptor(MethodHandles.Lookup.class))
+        );
+        mhInit.add(new LdcInsnNode(Type.getObjectType(targetNode.superName)));
+        mhInit.add(new LdcInsnNode(methodInsnNode.name));
+        mhInit.add(new LdcInsnNode(Type.getMethodType(methodInsnNode.desc)));
+        mhInit.add(new LdcInsnNode(Type.getObjectType(targetNode.name)));
+        mhInit.add(new MethodInsnNode(
+                INVOKEVIRTUAL,
+                Type.getInternalName(MethodHandles.Lookup.class),
+                "findSpecial",
+                Type.getMethodDescriptor(
+                        Type.getType(MethodHandle.class),
+                        Type.getType(Class.class),
+                        Type.getType(String.class),
+                        Type.getType(MethodType.class),
+                        Type.getType(Class.class)
+                )
+        ));
+        mhInit.add(new FieldInsnNode(PUTSTATIC, node.name, methodHandle.name, methodHandle.desc));
+        return mhInit;
+    }
+
+    private InvokeDynamicInsnNode createSuperInvokeDynamic(MethodInsnNode methodInsnNode) {
+        // the receiver is typed as the target, so the call site doesn't depend on the proxy's own name resolving
+        return new InvokeDynamicInsnNode(
+                methodInsnNode.name,
+                Type.getMethodDescriptor(
+                        Type.getReturnType(methodInsnNode.desc),
+                        Util.concat(Type.getObjectType(targetNode.name), Type.getArgumentTypes(methodInsnNode.desc))
+                ),
+                BOOTSTRAP,
+                Type.getObjectType(methodInsnNode.owner)
+        );
+    }
+
+    private InsnList createSuperCall(ClassNode node, MethodNode methodNode, MethodInsnNode methodInsnNode, FieldNode methodHandle) {
+        final InsnList superCall = new InsnList();
+        final LabelNode startTry = new LabelNode();
+        superCall.add(startTry);
+        // the receiver is typed as the target, since hidden proxies can't be referred to by name
+        final Type[] argumentTypes = Util.concat(Type.getObjectType(targetNode.name), Type.getArgumentTypes(methodInsnNode.desc));
+        int curArg = methodNode.maxLocals;
+        for (final Type argumentType : argumentTypes)
+            ASMHelper.addLocalVariable(methodNode, argumentType.getDescriptor());
+        for (int i = argumentTypes.length - 1; i >= 0; i--)
+            superCall.add(new VarInsnNode(argumentTypes[i].getOpcode(ISTORE), methodNode.maxLocals - argumentTypes.length + i));
+        superCall.add(new FieldInsnNode(GETSTATIC, node.name, methodHandle.name, methodHandle.desc));
+        for (Type argumentType : argumentTypes)
+            superCall.add(new VarInsnNode(argumentType.getOpcode(ILOAD), curArg++));
+        superCall.add(new MethodInsnNode(
+                INVOKEVIRTUAL,
+                Type.getInternalName(MethodHandle.class),
+                "invoke",
+                Type.getMethodDescriptor(
+                        Type.getReturnType(methodInsnNode.desc),
+                        argumentTypes
+                )
+        ));
+        final LabelNode endTry = new LabelNode();
+        superCall.add(endTry);
+        final LabelNode exitTry = new LabelNode();
+        superCall.add(new JumpInsnNode(GOTO, exitTry));
+        final LabelNode handleTry = new LabelNode();
+        superCall.add(handleTry);
+        final LocalVariableNode throwable = ASMHelper.addLocalVariable(
+                methodNode,
+                ASMHelper.allocateLocal(methodNode),
+                "e",
+                Type.getDescriptor(Throwable.class),
+                handleTry,
+                exitTry
+        );
+        superCall.add(new VarInsnNode(ASTORE, throwable.index));
+        superCall.add(new TypeInsnNode(NEW, Type.getInternalName(RuntimeException.class)));
+        superCall.add(new InsnNode(DUP));
+        superCall.add(new VarInsnNode(ALOAD, throwable.index));
+        superCall.add(new MethodInsnNode(
+                INVOKESPECIAL,
+                Type.getInternalName(RuntimeException.class),
+                "<init>",
+                Type.getMethodDescriptor(
+                        Type.VOID_TYPE,
+                        Type.getType(Throwable.class)
+                )
+        ));
+        superCall.add(new InsnNode(ATHROW));
+        superCall.add(exitTry);
+        methodNode.tryCatchBlocks.add(new TryCatchBlockNode(startTry, endTry, handleTry, Type.getInternalName(Throwable.class)));
+        return superCall;
+    }
+
+    /**
+     * Bootstrap method for {@link Dispatch#INVOKEDYNAMIC} "super.super" call sites.
+     *
+     * <p>Not meant to be called directly, only generated proxy classes link against it.
+     *
+     * @param caller the proxy class lookup
+     * @param name the name of the super method
+     * @param type the call site type, with the target class as the receiver
+     * @param owner the class declaring the super method
+     * @return a constant call site bound to the special method handle
+     * @throws NoSuchMethodException if the super method doesn't exist
+     * @throws IllegalAccessException if the super method can't be accessed
+     */
+    public static CallSite bootstrap(MethodHandles.Lookup caller, String name, MethodType type, Class<?> owner) throws NoSuchMethodException, IllegalAccessException {
+        return new ConstantCallSite(Util.IMPL_LOOKUP
+                .findSpecial(owner, name, type.dropParameterTypes(0, 1), type.parameterType(0))
+                .asType(type)
+        );
+    }
+
+    public enum Dispatch {
+        /**
+         * Calls through a static {@link MethodHandle} field initialized in the proxy's {@code <clinit>},
+         * wrapping checked exceptions into {@link RuntimeException}.
+         */
+        METHOD_HANDLE,
+
+        /**
+         * Calls through an {@code invokedynamic} instruction bound to a {@link ConstantCallSite}
+         * on its first invocation, with no field, static initializer or try/catch overhead.
+         */
+        INVOKEDYNAMIC
+    }
 }
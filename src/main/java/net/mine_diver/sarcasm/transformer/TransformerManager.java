@@ -2,6 +2,8 @@ package net.mine_diver.sarcasm.transformer;
 
 import net.mine_diver.sarcasm.SarcASM;
 import net.mine_diver.sarcasm.util.Identifier;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.tree.ClassNode;
 
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -27,9 +29,74 @@ public interface TransformerManager {
 
     void register(Identifier phaseIdentifier, ProxyTransformer transformer, boolean initProxy);
 
+    default boolean unregister(ProxyTransformer transformer) {
+        return unregister(transformer, true);
+    }
+
+    /**
+     * Removes the transformer from its phase and regenerates the proxy class once.
+     *
+     * <p>Methods requested only by the removed transformer are no longer pasted into the proxy class.
+     *
+     * @param transformer the transformer to remove
+     * @param initProxy whether the regenerated proxy class should be injected right away
+     * @return whether the transformer was registered
+     */
+    boolean unregister(ProxyTransformer transformer, boolean initProxy);
+
+    default void enable(ProxyTransformer transformer) {
+        setEnabled(transformer, true, true);
+    }
+
+    default void disable(ProxyTransformer transformer) {
+        setEnabled(transformer, false, true);
+    }
+
+    /**
+     * Enables or disables a registered transformer without removing it from its phase.
+     * Disabled transformers are skipped when generating the proxy class,
+     * and aren't included in {@link #forEach(Consumer)} and {@link #stream()}.
+     *
+     * <p>The proxy class is only regenerated if the state actually changed.
+     *
+     * @param transformer the registered transformer
+     * @param enabled whether the transformer should be enabled
+     * @param initProxy whether the regenerated proxy class should be injected right away
+     * @throws IllegalArgumentException if the transformer isn't registered
+     */
+    void setEnabled(ProxyTransformer transformer, boolean enabled, boolean initProxy);
+
+    boolean isEnabled(ProxyTransformer transformer);
+
     void forEach(Consumer<ProxyTransformer> consumer);
 
+    /**
+     * Runs all transformers over the proxy class and passes the result to the given visitor.
+     *
+     * <p>Consecutive {@link ProxyVisitorTransformer}s are fused into a single visitor chain,
+     * tree transformers get the proxy class materialized as a {@link ClassNode}.
+     *
+     * @param proxyNode the proxy class skeleton
+     * @param writer the visitor receiving the transformed proxy class
+     */
+    void accept(ClassNode proxyNode, ClassVisitor writer);
+
+    /**
+     * Same as {@link #accept(ClassNode, ClassVisitor)}, but only runs the transformers matching the filter.
+     *
+     * @param node the class to transform
+     * @param writer the visitor receiving the transformed class
+     * @param filter the filter of transformers to run
+     */
+    void accept(ClassNode node, ClassVisitor writer, Predicate<? super ProxyTransformer> filter);
+
     Stream<ProxyTransformer> stream();
 
+    /**
+     * @param transformer the transformer
+     * @return the phase the transformer is registered in, or null if it isn't registered or is disabled
+     */
+    Identifier getPhase(ProxyTransformer transformer);
+
     void addPhaseOrdering(Identifier firstPhase, Identifier secondPhase);
 }
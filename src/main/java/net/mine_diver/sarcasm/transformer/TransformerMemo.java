@@ -0,0 +1,208 @@
+package net.mine_diver.sarcasm.transformer;
+
+import net.mine_diver.sarcasm.util.ASMHelper;
+import net.mine_diver.sarcasm.util.collection.BoundedCache;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InnerClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Memoizes what chains of {@link PureTransformer}s do to each requested method of a target class.
+ *
+ * <p>
+ *     A method transformer gets the target method as left by every transformer before it,
+ *     so if all of them are pure, the method's name and descriptor and the chain's version keys
+ *     determine the result. Results are kept as snapshots of the method and of the members added for it,
+ *     copied on every replay, so later transformers can't modify the memoized state.
+ * </p>
+ */
+final class TransformerMemo {
+    private static final int MEMO_SIZE = Math.max(1, Integer.getInteger("sarcasm.transformers.memoSize", 1024));
+    private static final Field[] METHOD_FIELDS = Arrays
+            .stream(MethodNode.class.getFields())
+            .filter(field -> !Modifier.isStatic(field.getModifiers()) && !"instructions".equals(field.getName()))
+            .toArray(Field[]::new);
+
+    /**
+     * Computes the chain of each transformer, which is null once a transformer that isn't pure comes up.
+     *
+     * @param transformers the transformers, in order
+     * @return the chains ending with each transformer
+     */
+    static Chain[] chains(ProxyTransformer[] transformers) {
+        final Chain[] chains = new Chain[transformers.length];
+        final Object[] versions = new Object[transformers.length];
+        int hashCode = 1;
+        for (int i = 0; i < transformers.length; i++) {
+            if (!(transformers[i] instanceof PureTransformer) || !((PureTransformer) transformers[i]).isPure()) break;
+            versions[i] = ((PureTransformer) transformers[i]).getVersionKey();
+            hashCode = 31 * (31 * hashCode + System.identityHashCode(transformers[i])) + Objects.hashCode(versions[i]);
+            chains[i] = new Chain(transformers, versions, i + 1, hashCode);
+        }
+        return chains;
+    }
+
+    private final BoundedCache<Key, Snapshot> snapshots = new BoundedCache<>(MEMO_SIZE);
+
+    void invalidate(ProxyTransformer transformer) {
+        snapshots.removeIf(key -> key.chain.contains(transformer));
+    }
+
+    /**
+     * Replays the longest memoized part of the chains on the method.
+     *
+     * @param chains the chains of the method transformers about to run
+     * @param method the method
+     * @param context the context of the method
+     * @return the number of method transformers replayed, which don't have to run anymore
+     */
+    int replay(Chain[] chains, MethodNode method, ClassContext context) {
+        for (int i = chains.length - 1; i >= 0; i--) {
+            if (chains[i] == null) continue;
+            final Snapshot snapshot = snapshots.get(new Key(chains[i], method.name, method.desc));
+            if (snapshot == null) continue;
+            final MethodNode replayed;
+            // reading a node resets its labels, so concurrent replays of the same snapshot have to take turns
+            synchronized (snapshot) {
+                replayed = ASMHelper.clone(snapshot.method);
+                context.fields = copyFields(snapshot.fields);
+                context.methods = copyMethods(snapshot.methods);
+                context.innerClasses = copyInnerClasses(snapshot.innerClasses);
+            }
+            for (final Field field : METHOD_FIELDS) try {
+                field.set(method, field.get(replayed));
+            } catch (final IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+            method.instructions.clear();
+            method.instructions.add(replayed.instructions);
+            return i + 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Memoizes the state of the method and of the members added for it after the chain.
+     *
+     * @param chain the chain that ran on the method
+     * @param name the name of the method before the chain ran
+     * @param desc the descriptor of the method before the chain ran
+     * @param method the method
+     * @param context the context of the method
+     */
+    void store(Chain chain, String name, String desc, MethodNode method, ClassContext context) {
+        snapshots.put(new Key(chain, name, desc), new Snapshot(
+                ASMHelper.clone(method),
+                copyFields(context.fields),
+                copyMethods(context.methods),
+                copyInnerClasses(context.innerClasses)
+        ));
+    }
+
+    private static List<FieldNode> copyFields(List<FieldNode> fields) {
+        if (fields == null) return null;
+        final ClassNode holder = new ClassNode();
+        fields.forEach(field -> field.accept(holder));
+        return holder.fields;
+    }
+
+    private static List<MethodNode> copyMethods(List<MethodNode> methods) {
+        if (methods == null) return null;
+        final List<MethodNode> copies = new ArrayList<>(methods.size());
+        methods.forEach(method -> copies.add(ASMHelper.clone(method)));
+        return copies;
+    }
+
+    private static List<InnerClassNode> copyInnerClasses(List<InnerClassNode> innerClasses) {
+        if (innerClasses == null) return null;
+        final List<InnerClassNode> copies = new ArrayList<>(innerClasses.size());
+        innerClasses.forEach(innerClass -> copies.add(new InnerClassNode(innerClass.name, innerClass.outerName, innerClass.innerName, innerClass.access)));
+        return copies;
+    }
+
+    /**
+     * The transformers up to and including one of them, with their version keys.
+     * Transformers are compared by identity.
+     */
+    static final class Chain {
+        private final ProxyTransformer[] transformers;
+        private final Object[] versions;
+        private final int length;
+        private final int hashCode;
+
+        private Chain(ProxyTransformer[] transformers, Object[] versions, int length, int hashCode) {
+            this.transformers = transformers;
+            this.versions = versions;
+            this.length = length;
+            this.hashCode = hashCode;
+        }
+
+        private boolean contains(ProxyTransformer transformer) {
+            for (int i = 0; i < length; i++) if (transformers[i] == transformer) return true;
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Chain)) return false;
+            final Chain chain = (Chain) obj;
+            if (length != chain.length || hashCode != chain.hashCode) return false;
+            for (int i = 0; i < length; i++)
+                if (transformers[i] != chain.transformers[i] || !Objects.equals(versions[i], chain.versions[i])) return false;
+            return true;
+        }
+    }
+
+    private static final class Key {
+        private final Chain chain;
+        private final String name;
+        private final String desc;
+
+        private Key(Chain chain, String name, String desc) {
+            this.chain = chain;
+            this.name = name;
+            this.desc = desc;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * chain.hashCode + name.hashCode()) + desc.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            final Key key = (Key) obj;
+            return chain.equals(key.chain) && name.equals(key.name) && desc.equals(key.desc);
+        }
+    }
+
+    private static final class Snapshot {
+        private final MethodNode method;
+        private final List<FieldNode> fields;
+        private final List<MethodNode> methods;
+        private final List<InnerClassNode> innerClasses;
+
+        private Snapshot(MethodNode method, List<FieldNode> fields, List<MethodNode> methods, List<InnerClassNode> innerClasses) {
+            this.method = method;
+            this.fields = fields;
+            this.methods = methods;
+            this.innerClasses = innerClasses;
+        }
+    }
+}
@@ -20,6 +20,23 @@ class TransformerPhaseData extends SortableNode<TransformerPhaseData> {
         transformers[oldLength] = transformer;
     }
 
+    boolean removeTransformer(ProxyTransformer transformer) {
+        for (int i = 0; i < transformers.length; i++) {
+            if (transformers[i] != transformer) continue;
+            final ProxyTransformer[] newTransformers = new ProxyTransformer[transformers.length - 1];
+            System.arraycopy(transformers, 0, newTransformers, 0, i);
+            System.arraycopy(transformers, i + 1, newTransformers, i, newTransformers.length - i);
+            transformers = newTransformers;
+            return true;
+        }
+        return false;
+    }
+
+    boolean contains(ProxyTransformer transformer) {
+        for (final ProxyTransformer registered : transformers) if (registered == transformer) return true;
+        return false;
+    }
+
     @Override
     protected String getDescription() {
         return id.toString();
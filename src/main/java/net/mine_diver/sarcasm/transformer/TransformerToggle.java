@@ -0,0 +1,119 @@
+package net.mine_diver.sarcasm.transformer;
+
+import net.mine_diver.sarcasm.util.Identifier;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+
+import java.lang.invoke.*;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.objectweb.asm.Opcodes.H_INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.IFEQ;
+
+/**
+ * A runtime switch for code injected by transformers.
+ *
+ * <p>
+ *     Guarded code checks the toggle through an {@code invokedynamic} instruction
+ *     linked to a {@link MutableCallSite} with a constant target,
+ *     so the JIT folds the check away while the toggle doesn't change.
+ *     Flipping the toggle deoptimizes the dependent code instead of regenerating the proxy class,
+ *     which is a lot cheaper than disabling the whole transformer.
+ * </p>
+ *
+ * <p>
+ *     Toggles are identified globally and start enabled.
+ * </p>
+ */
+public final class TransformerToggle {
+    private static final Map<Identifier, TransformerToggle> TOGGLES = new ConcurrentHashMap<>();
+    private static final String GUARD_NAME = "enabled";
+    private static final String GUARD_DESC = Type.getMethodDescriptor(Type.BOOLEAN_TYPE);
+    private static final Handle BOOTSTRAP = new Handle(
+            H_INVOKESTATIC,
+            Type.getInternalName(TransformerToggle.class),
+            "bootstrap",
+            Type.getMethodDescriptor(
+                    Type.getType(CallSite.class),
+                    Type.getType(MethodHandles.Lookup.class),
+                    Type.getType(String.class),
+                    Type.getType(MethodType.class),
+                    Type.getType(String.class)
+            ),
+            false
+    );
+
+    public static TransformerToggle of(Identifier id) {
+        return TOGGLES.computeIfAbsent(Objects.requireNonNull(id), TransformerToggle::new);
+    }
+
+    public final Identifier id;
+    private final MutableCallSite site;
+    private volatile boolean enabled = true;
+
+    private TransformerToggle(Identifier id) {
+        this.id = id;
+        site = new MutableCallSite(MethodHandles.constant(boolean.class, true));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized void setEnabled(boolean enabled) {
+        if (this.enabled == enabled) return;
+        this.enabled = enabled;
+        site.setTarget(MethodHandles.constant(boolean.class, enabled));
+        MutableCallSite.syncAll(new MutableCallSite[] { site });
+    }
+
+    /**
+     * Creates a guard that jumps to the given label if the toggle is disabled.
+     *
+     * @param disabled the label to jump to if the toggle is disabled
+     * @return the guard instructions
+     */
+    public InsnList guard(LabelNode disabled) {
+        final InsnList guard = new InsnList();
+        guard.add(new InvokeDynamicInsnNode(GUARD_NAME, GUARD_DESC, BOOTSTRAP, id.toString()));
+        guard.add(new JumpInsnNode(IFEQ, disabled));
+        return guard;
+    }
+
+    /**
+     * Visits a guard that jumps to the given label if the toggle is disabled.
+     *
+     * @param visitor the method visitor
+     * @param disabled the label to jump to if the toggle is disabled
+     */
+    public void visitGuard(MethodVisitor visitor, Label disabled) {
+        visitor.visitInvokeDynamicInsn(GUARD_NAME, GUARD_DESC, BOOTSTRAP, id.toString());
+        visitor.visitJumpInsn(IFEQ, disabled);
+    }
+
+    /**
+     * Wraps the given injected instructions with a guard, so they're skipped if the toggle is disabled.
+     * The instructions must leave the stack as they found it.
+     *
+     * @param injected the injected instructions
+     * @return the given instruction list
+     */
+    public InsnList wrap(InsnList injected) {
+        final LabelNode disabled = new LabelNode();
+        injected.insert(guard(disabled));
+        injected.add(disabled);
+        return injected;
+    }
+
+    public static CallSite bootstrap(MethodHandles.Lookup caller, String name, MethodType type, String id) {
+        return of(Identifier.of(id)).site;
+    }
+}
@@ -7,6 +7,8 @@ import org.objectweb.asm.tree.*;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Objects;
@@ -173,6 +175,21 @@ public final class ASMHelper {
         return end;
     }
 
+    /**
+     * Copies the state of one class node into another, sharing all members
+     *
+     * @param from class node to copy from
+     * @param to class node to copy into
+     */
+    public static void copy(ClassNode from, ClassNode to) {
+        for (Field field : ClassNode.class.getFields())
+            if (!Modifier.isStatic(field.getModifiers())) try {
+                field.set(to, field.get(from));
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+    }
+
     public static MethodNode clone(MethodNode methodNode) {
         MethodNode clonedNode = new MethodNode(methodNode.access, methodNode.name, methodNode.desc, methodNode.signature, methodNode.exceptions.toArray(new String[0]));
         methodNode.accept(clonedNode);
@@ -0,0 +1,144 @@
+package net.mine_diver.sarcasm.util;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps byte sequences off the heap, so long-lived class bytes don't add to GC pressure.
+ *
+ * <p>
+ *     Blocks are allocated with {@link sun.misc.Unsafe} and should be {@linkplain Block#release() released} explicitly.
+ *     As a fallback, the arena tracks its blocks with phantom references,
+ *     and frees the memory of blocks that became unreachable without being released
+ *     the next time a block is stored or the footprint is read.
+ * </p>
+ */
+public final class ByteArena {
+    private static final long BYTE_ARRAY_OFFSET = Util.UNSAFE.arrayBaseOffset(byte[].class);
+
+    private final LongAdder footprint = new LongAdder();
+    private final LongAdder blocks = new LongAdder();
+    private final ReferenceQueue<Block> queue = new ReferenceQueue<>();
+    private final Set<Memory> memories = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Copies the given bytes into a new off-heap block.
+     *
+     * @param bytes the bytes to store
+     * @return the block holding the bytes
+     */
+    public Block store(byte[] bytes) {
+        expunge();
+        final long address = Util.UNSAFE.allocateMemory(Math.max(bytes.length, 1));
+        Util.UNSAFE.copyMemory(bytes, BYTE_ARRAY_OFFSET, null, address, bytes.length);
+        footprint.add(bytes.length);
+        blocks.increment();
+        return new Block(address, bytes.length);
+    }
+
+    /**
+     * @return the number of bytes held by unreleased blocks
+     */
+    public long getFootprint() {
+        expunge();
+        return footprint.sum();
+    }
+
+    /**
+     * @return the number of unreleased blocks
+     */
+    public long getBlockCount() {
+        expunge();
+        return blocks.sum();
+    }
+
+    private void expunge() {
+        Reference<? extends Block> reference;
+        while ((reference = queue.poll()) != null) ((Memory) reference).free();
+    }
+
+    // the memory of a block, which outlives the block if it isn't released
+    private final class Memory extends PhantomReference<Block> {
+        private long address;
+        private final int length;
+
+        private Memory(Block block, long address, int length) {
+            super(block, queue);
+            this.address = address;
+            this.length = length;
+            memories.add(this);
+        }
+
+        private synchronized void free() {
+            memories.remove(this);
+            if (address == 0) return;
+            Util.UNSAFE.freeMemory(address);
+            address = 0;
+            footprint.add(-length);
+            blocks.decrement();
+        }
+    }
+
+    public final class Block {
+        // the memory is only freed behind the block's back once the block is unreachable,
+        // and the block's own lock keeps it reachable while it's accessed
+        private final Memory memory;
+        private long address;
+        private final int length;
+
+        private Block(long address, int length) {
+            memory = new Memory(this, address, length);
+            this.address = address;
+            this.length = length;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        /**
+         * Copies the block back onto the heap.
+         *
+         * @return the bytes of the block
+         */
+        public synchronized byte[] toByteArray() {
+            checkReleased();
+            final byte[] bytes = new byte[length];
+            Util.UNSAFE.copyMemory(null, address, bytes, BYTE_ARRAY_OFFSET, length);
+            return bytes;
+        }
+
+        /**
+         * Compares the block with the given bytes without copying it onto the heap.
+         *
+         * @param bytes the bytes to compare with
+         * @return whether the block holds the same bytes
+         */
+        public synchronized boolean contentEquals(byte[] bytes) {
+            checkReleased();
+            if (bytes.length != length) return false;
+            int i = 0;
+            for (; i + Long.BYTES <= length; i += Long.BYTES)
+                if (Util.UNSAFE.getLong(address + i) != Util.UNSAFE.getLong(bytes, BYTE_ARRAY_OFFSET + i)) return false;
+            for (; i < length; i++)
+                if (Util.UNSAFE.getByte(address + i) != bytes[i]) return false;
+            return true;
+        }
+
+        /**
+         * Frees the memory of the block. Releasing a block twice does nothing.
+         */
+        public synchronized void release() {
+            address = 0;
+            memory.free();
+        }
+
+        private void checkReleased() {
+            if (address == 0) throw new IllegalStateException("Tried to access a released block!");
+        }
+    }
+}
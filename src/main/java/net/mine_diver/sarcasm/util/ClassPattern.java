@@ -0,0 +1,91 @@
+package net.mine_diver.sarcasm.util;
+
+import java.lang.annotation.Annotation;
+import java.util.Objects;
+
+/**
+ * Describes a family of classes by package, supertype or annotation.
+ *
+ * @see net.mine_diver.sarcasm.util.collection.ClassPatternIndex
+ */
+public final class ClassPattern {
+    public enum Kind {
+        PACKAGE,
+        SUPERTYPE,
+        ANNOTATION
+    }
+
+    /**
+     * Matches all classes in the given package and its subpackages.
+     *
+     * @param packagePrefix the package name, like {@code "net.mine_diver.sarcasm"}
+     * @return the pattern
+     */
+    public static ClassPattern inPackage(String packagePrefix) {
+        if (Objects.requireNonNull(packagePrefix).isEmpty() || packagePrefix.startsWith(".") || packagePrefix.endsWith("."))
+            throw new IllegalArgumentException("Invalid package prefix \"" + packagePrefix + "\"!");
+        return new ClassPattern(Kind.PACKAGE, packagePrefix);
+    }
+
+    /**
+     * Matches all classes that extend or implement the given type, including the type itself.
+     *
+     * @param supertype the supertype
+     * @return the pattern
+     */
+    public static ClassPattern subtypeOf(Class<?> supertype) {
+        return new ClassPattern(Kind.SUPERTYPE, Objects.requireNonNull(supertype));
+    }
+
+    /**
+     * Matches all classes that are directly annotated with the given annotation,
+     * or inherit it if it's {@link java.lang.annotation.Inherited}.
+     *
+     * @param annotation the annotation type
+     * @return the pattern
+     */
+    public static ClassPattern annotatedWith(Class<? extends Annotation> annotation) {
+        return new ClassPattern(Kind.ANNOTATION, Objects.requireNonNull(annotation));
+    }
+
+    public final Kind kind;
+    public final Object value;
+
+    private ClassPattern(Kind kind, Object value) {
+        this.kind = kind;
+        this.value = value;
+    }
+
+    public boolean matches(Class<?> type) {
+        switch (kind) {
+            case PACKAGE:
+                final String packagePrefix = (String) value;
+                final String name = type.getName();
+                return name.startsWith(packagePrefix) && name.length() > packagePrefix.length() && name.charAt(packagePrefix.length()) == '.';
+            case SUPERTYPE:
+                return ((Class<?>) value).isAssignableFrom(type);
+            case ANNOTATION:
+                return type.isAnnotationPresent(((Class<?>) value).asSubclass(Annotation.class));
+            default:
+                throw new IllegalStateException("Unknown pattern kind " + kind + "!");
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return kind.hashCode() * 31 + value.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof ClassPattern)) return false;
+        final ClassPattern pattern = (ClassPattern) obj;
+        return kind == pattern.kind && value.equals(pattern.value);
+    }
+
+    @Override
+    public String toString() {
+        return kind + "(" + (value instanceof Class ? ((Class<?>) value).getName() : value) + ")";
+    }
+}
@@ -1,9 +1,10 @@
 package net.mine_diver.sarcasm.util;
 
+import net.mine_diver.sarcasm.metrics.Metrics;
 import net.mine_diver.sarcasm.util.collection.SoftReferenceCache;
 
 public final class Identifier implements Comparable<Identifier> {
-    private static final SoftReferenceCache<IdentifierCacheKey, Identifier> CACHE = new SoftReferenceCache<>(Identifier::new);
+    private static final SoftReferenceCache<IdentifierCacheKey, Identifier> CACHE = Metrics.registerCache("cache.identifiers", new SoftReferenceCache<>(Identifier::new));
 
     public static final char NAMESPACE_SEPARATOR = ':';
 
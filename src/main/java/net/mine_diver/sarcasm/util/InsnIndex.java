@@ -0,0 +1,438 @@
+package net.mine_diver.sarcasm.util;
+
+import org.objectweb.asm.tree.*;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * An index of all instructions in a class node's methods,
+ * shared by every transformer working on the same node.
+ *
+ * <p>
+ *     Instructions are indexed by opcode, by the owner, name and descriptor of method calls
+ *     and by the owner, name and descriptor of field accesses.
+ *     The index replaces the instruction lists of indexed methods with a subclass of {@link InsnList}
+ *     that keeps the index up to date as instructions are added, inserted, replaced or removed,
+ *     so transformers can freely mix queries and modifications.
+ *     Each indexed list keeps the entries of its own method, so threads modifying and querying
+ *     different methods don't contend with each other.
+ * </p>
+ *
+ * <p>
+ *     Indexing a method moves its instructions into the new list,
+ *     which leaves the method's previous {@link InsnList} object empty.
+ *     References to {@link MethodNode#instructions} taken before a query or {@link #refresh()}
+ *     have to be read again from the method.
+ * </p>
+ *
+ * <p>
+ *     Methods added to the class node or instruction lists replaced entirely are picked up on the next query.
+ *     Changing an instruction in place, such as assigning {@link MethodInsnNode#owner},
+ *     isn't visible to the index until it's passed to {@link #reindex(AbstractInsnNode)}.
+ * </p>
+ *
+ * <p>
+ *     Query results are snapshots ordered by method, in the order of {@link ClassNode#methods},
+ *     and by position in the method.
+ * </p>
+ */
+public final class InsnIndex {
+    private static final Map<ClassNode, InsnIndex> INDEXES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Returns the index of the given class node, creating it if it doesn't exist yet.
+     *
+     * @param node the class node
+     * @return the instruction index of the class node
+     */
+    public static InsnIndex of(ClassNode node) {
+        return INDEXES.computeIfAbsent(node, InsnIndex::new);
+    }
+
+    /**
+     * Drops the index of the given class node.
+     *
+     * <p>Instruction lists of the node's methods stay valid, they just stop updating the dropped index.
+     *
+     * @param node the class node
+     */
+    public static void release(ClassNode node) {
+        final InsnIndex index = INDEXES.remove(node);
+        if (index != null) synchronized (index) {
+            index.methods.values().forEach(IndexedInsnList::detach);
+            index.methods.clear();
+            index.owners.clear();
+        }
+    }
+
+    /**
+     * Returns the number of modifications made to the given instruction list since it was indexed,
+     * so callers caching data derived from the list can tell whether it's still current.
+     *
+     * <p>Every add, insert, set, remove and clear counts, even after the index is released.
+     *
+     * @param insns the instruction list
+     * @return the modification count, or -1 if the list was never indexed or {@linkplain #countModifications(MethodNode) counted}
+     */
+    public static long getModificationCount(InsnList insns) {
+        return insns instanceof IndexedInsnList ? ((IndexedInsnList) insns).modifications : -1;
+    }
+
+    /**
+     * Makes the method's instruction list count its modifications without indexing it,
+     * so {@link #getModificationCount(InsnList)} is known for it.
+     *
+     * <p>A plain list is replaced the same way indexing replaces it.
+     * If the method is indexed later, the counting list is kept and its count carries on.
+     *
+     * @param method the method
+     * @return the method's counting instruction list
+     */
+    static InsnList countModifications(MethodNode method) {
+        if (method.instructions instanceof IndexedInsnList) return method.instructions;
+        final IndexedInsnList insns = new IndexedInsnList(method);
+        // this empties the method's previous list
+        insns.add(method.instructions);
+        method.instructions = insns;
+        return insns;
+    }
+
+    // the index is the value of its own node in INDEXES, so it can only hold the node weakly
+    private final Reference<ClassNode> node;
+    private final Map<MethodNode, IndexedInsnList> methods = new IdentityHashMap<>();
+    // instructions don't override equals and hashCode, so this is an identity map
+    private final Map<AbstractInsnNode, IndexedInsnList> owners = new ConcurrentHashMap<>();
+
+    private InsnIndex(ClassNode node) {
+        this.node = new WeakReference<>(node);
+    }
+
+    public List<AbstractInsnNode> getByOpcode(int opcode) {
+        return collect(insns -> insns.byOpcode.get(opcode));
+    }
+
+    public List<AbstractInsnNode> getByOpcode(MethodNode method, int opcode) {
+        return collect(method, insns -> insns.byOpcode.get(opcode));
+    }
+
+    /**
+     * @param owner the internal name of the method owner
+     * @return all method calls with the given owner
+     */
+    public List<MethodInsnNode> getMethodInsns(String owner) {
+        return collect(insns -> insns.methodInsns.get(owner));
+    }
+
+    public List<MethodInsnNode> getMethodInsns(String owner, String name, String desc) {
+        final String key = memberKey(owner, name, desc);
+        return collect(insns -> insns.methodInsns.get(key));
+    }
+
+    public List<MethodInsnNode> getMethodInsns(MethodNode method, String owner, String name, String desc) {
+        final String key = memberKey(owner, name, desc);
+        return collect(method, insns -> insns.methodInsns.get(key));
+    }
+
+    /**
+     * @param owner the internal name of the field owner
+     * @return all field accesses with the given owner
+     */
+    public List<FieldInsnNode> getFieldInsns(String owner) {
+        return collect(insns -> insns.fieldInsns.get(owner));
+    }
+
+    public List<FieldInsnNode> getFieldInsns(String owner, String name, String desc) {
+        final String key = memberKey(owner, name, desc);
+        return collect(insns -> insns.fieldInsns.get(key));
+    }
+
+    public List<FieldInsnNode> getFieldInsns(MethodNode method, String owner, String name, String desc) {
+        final String key = memberKey(owner, name, desc);
+        return collect(method, insns -> insns.fieldInsns.get(key));
+    }
+
+    /**
+     * @param insn an indexed instruction
+     * @return the method containing the instruction, or null if the instruction isn't indexed
+     */
+    public MethodNode getMethod(AbstractInsnNode insn) {
+        IndexedInsnList insns = owners.get(insn);
+        if (insns == null || insns.index != this || insns.method.instructions != insns) synchronized (this) {
+            sync();
+            insns = owners.get(insn);
+        }
+        return insns == null || insns.index != this ? null : insns.method;
+    }
+
+    /**
+     * Updates the index entries of an instruction that was changed in place.
+     *
+     * @param insn the changed instruction
+     */
+    public void reindex(AbstractInsnNode insn) {
+        final IndexedInsnList insns = owners.get(insn);
+        if (insns != null) insns.reindex(insn);
+    }
+
+    /**
+     * Picks up methods added to the class node and instruction lists replaced since the last query.
+     *
+     * <p>Queries do this on their own, but it has to be done explicitly before
+     * several threads start modifying different methods of the class node.
+     * After that, queries scoped to a method only lock the method's own entries.
+     */
+    public synchronized void refresh() {
+        sync();
+    }
+
+    private <T extends AbstractInsnNode> List<T> collect(Function<IndexedInsnList, Set<T>> bucket) {
+        final List<T> result = new ArrayList<>();
+        synchronized (this) {
+            final ClassNode node = sync();
+            if (node != null) for (final MethodNode method : node.methods) methods.get(method).collect(bucket, result);
+        }
+        return result;
+    }
+
+    private <T extends AbstractInsnNode> List<T> collect(MethodNode method, Function<IndexedInsnList, Set<T>> bucket) {
+        IndexedInsnList insns = method.instructions instanceof IndexedInsnList ? (IndexedInsnList) method.instructions : null;
+        if (insns == null || insns.index != this) synchronized (this) {
+            sync();
+            insns = methods.get(method);
+        }
+        if (insns == null) return Collections.emptyList();
+        final List<T> result = new ArrayList<>();
+        insns.collect(bucket, result);
+        return result;
+    }
+
+    private ClassNode sync() {
+        final ClassNode node = this.node.get();
+        if (node == null) return null;
+        if (methods.size() == node.methods.size()) {
+            boolean upToDate = true;
+            for (final MethodNode method : node.methods)
+                if (methods.get(method) != method.instructions) {
+                    upToDate = false;
+                    break;
+                }
+            if (upToDate) return node;
+        }
+        final Set<MethodNode> current = Util.newIdentitySet();
+        current.addAll(node.methods);
+        for (final Iterator<Map.Entry<MethodNode, IndexedInsnList>> iterator = methods.entrySet().iterator(); iterator.hasNext(); ) {
+            final Map.Entry<MethodNode, IndexedInsnList> entry = iterator.next();
+            if (!current.contains(entry.getKey()) || entry.getKey().instructions != entry.getValue()) {
+                entry.getValue().detach();
+                iterator.remove();
+            }
+        }
+        for (final MethodNode method : node.methods)
+            if (!methods.containsKey(method)) {
+                final IndexedInsnList insns;
+                if (method.instructions instanceof IndexedInsnList && ((IndexedInsnList) method.instructions).method == method && ((IndexedInsnList) method.instructions).index == null)
+                    // a counting list that isn't indexed yet, or whose index was released
+                    insns = (IndexedInsnList) method.instructions;
+                else {
+                    insns = new IndexedInsnList(method);
+                    // this empties the method's previous list
+                    insns.add(method.instructions);
+                    method.instructions = insns;
+                }
+                methods.put(method, insns);
+                insns.attach(this);
+            }
+        return node;
+    }
+
+    private static String memberKey(String owner, String name, String desc) {
+        return owner + '.' + name + desc;
+    }
+
+    private static final class IndexedInsnList extends InsnList {
+        private final MethodNode method;
+        private volatile InsnIndex index;
+        private final Set<AbstractInsnNode> members = Util.newIdentitySet();
+        private final Map<Integer, Set<AbstractInsnNode>> byOpcode = new HashMap<>();
+        private final Map<String, Set<MethodInsnNode>> methodInsns = new HashMap<>();
+        private final Map<String, Set<FieldInsnNode>> fieldInsns = new HashMap<>();
+        private long modifications;
+
+        private IndexedInsnList(MethodNode method) {
+            this.method = method;
+        }
+
+        @Override
+        public void set(AbstractInsnNode oldInsn, AbstractInsnNode newInsn) {
+            super.set(oldInsn, newInsn);
+            removed(oldInsn);
+            added(newInsn);
+        }
+
+        @Override
+        public void add(AbstractInsnNode insn) {
+            super.add(insn);
+            added(insn);
+        }
+
+        @Override
+        public void add(InsnList insns) {
+            final AbstractInsnNode[] added = insns.toArray();
+            super.add(insns);
+            added(added);
+        }
+
+        @Override
+        public void insert(AbstractInsnNode insn) {
+            super.insert(insn);
+            added(insn);
+        }
+
+        @Override
+        public void insert(InsnList insns) {
+            final AbstractInsnNode[] added = insns.toArray();
+            super.insert(insns);
+            added(added);
+        }
+
+        @Override
+        public void insert(AbstractInsnNode previousInsn, AbstractInsnNode insn) {
+            super.insert(previousInsn, insn);
+            added(insn);
+        }
+
+        @Override
+        public void insert(AbstractInsnNode previousInsn, InsnList insns) {
+            final AbstractInsnNode[] added = insns.toArray();
+            super.insert(previousInsn, insns);
+            added(added);
+        }
+
+        @Override
+        public void insertBefore(AbstractInsnNode nextInsn, AbstractInsnNode insn) {
+            super.insertBefore(nextInsn, insn);
+            added(insn);
+        }
+
+        @Override
+        public void insertBefore(AbstractInsnNode nextInsn, InsnList insns) {
+            final AbstractInsnNode[] added = insns.toArray();
+            super.insertBefore(nextInsn, insns);
+            added(added);
+        }
+
+        @Override
+        public void remove(AbstractInsnNode insn) {
+            super.remove(insn);
+            removed(insn);
+        }
+
+        @Override
+        public void clear() {
+            final AbstractInsnNode[] removed = toArray();
+            super.clear();
+            removed(removed);
+        }
+
+        private void attach(InsnIndex index) {
+            synchronized (this) {
+                this.index = index;
+                for (final AbstractInsnNode insn : this) if (members.add(insn)) indexKeys(insn);
+            }
+            for (final AbstractInsnNode insn : this) index.owners.put(insn, this);
+        }
+
+        private synchronized void detach() {
+            final InsnIndex index = this.index;
+            this.index = null;
+            if (index != null) for (final AbstractInsnNode insn : members) index.owners.remove(insn, this);
+            members.clear();
+            byOpcode.clear();
+            methodInsns.clear();
+            fieldInsns.clear();
+        }
+
+        private synchronized <T extends AbstractInsnNode> void collect(Function<IndexedInsnList, Set<T>> bucket, List<T> result) {
+            final Set<T> insns = bucket.apply(this);
+            if (insns == null || insns.isEmpty()) return;
+            final int from = result.size();
+            result.addAll(insns);
+            if (insns.size() > 1) result.subList(from, result.size()).sort(Comparator.comparingInt(this::indexOf));
+        }
+
+        private synchronized void reindex(AbstractInsnNode insn) {
+            if (index == null || !members.contains(insn)) return;
+            unindexKeys(insn);
+            indexKeys(insn);
+        }
+
+        private void added(AbstractInsnNode... added) {
+            modifications++;
+            final InsnIndex index = this.index;
+            if (index == null) return;
+            synchronized (this) {
+                if (this.index != index) return;
+                for (final AbstractInsnNode insn : added) if (members.add(insn)) indexKeys(insn);
+            }
+            // instructions moved from another method without being removed from it first
+            for (final AbstractInsnNode insn : added) {
+                final IndexedInsnList previous = index.owners.put(insn, this);
+                if (previous != null && previous != this) previous.forget(insn);
+            }
+        }
+
+        private void removed(AbstractInsnNode... removed) {
+            modifications++;
+            final InsnIndex index = this.index;
+            if (index == null) return;
+            synchronized (this) {
+                if (this.index != index) return;
+                for (final AbstractInsnNode insn : removed) if (members.remove(insn)) unindexKeys(insn);
+            }
+            for (final AbstractInsnNode insn : removed) index.owners.remove(insn, this);
+        }
+
+        private synchronized void forget(AbstractInsnNode insn) {
+            if (members.remove(insn)) unindexKeys(insn);
+        }
+
+        private void indexKeys(AbstractInsnNode insn) {
+            if (insn.getOpcode() >= 0)
+                byOpcode.computeIfAbsent(insn.getOpcode(), opcode -> Util.newIdentitySet()).add(insn);
+            if (insn instanceof MethodInsnNode) {
+                final MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                methodInsns.computeIfAbsent(methodInsn.owner, key -> Util.newIdentitySet()).add(methodInsn);
+                methodInsns.computeIfAbsent(memberKey(methodInsn.owner, methodInsn.name, methodInsn.desc), key -> Util.newIdentitySet()).add(methodInsn);
+            } else if (insn instanceof FieldInsnNode) {
+                final FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+                fieldInsns.computeIfAbsent(fieldInsn.owner, key -> Util.newIdentitySet()).add(fieldInsn);
+                fieldInsns.computeIfAbsent(memberKey(fieldInsn.owner, fieldInsn.name, fieldInsn.desc), key -> Util.newIdentitySet()).add(fieldInsn);
+            }
+        }
+
+        private void unindexKeys(AbstractInsnNode insn) {
+            // keys are recomputed from the instruction, so entries left behind by in-place changes are swept by value
+            final Set<AbstractInsnNode> opcodeBucket = byOpcode.get(insn.getOpcode());
+            if (opcodeBucket == null || !opcodeBucket.remove(insn))
+                byOpcode.values().forEach(bucket -> bucket.remove(insn));
+            if (insn instanceof MethodInsnNode) {
+                final MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                if (!removeFrom(methodInsns, methodInsn.owner, insn) | !removeFrom(methodInsns, memberKey(methodInsn.owner, methodInsn.name, methodInsn.desc), insn))
+                    methodInsns.values().forEach(bucket -> bucket.remove(insn));
+            } else if (insn instanceof FieldInsnNode) {
+                final FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+                if (!removeFrom(fieldInsns, fieldInsn.owner, insn) | !removeFrom(fieldInsns, memberKey(fieldInsn.owner, fieldInsn.name, fieldInsn.desc), insn))
+                    fieldInsns.values().forEach(bucket -> bucket.remove(insn));
+            }
+        }
+
+        private static boolean removeFrom(Map<String, ? extends Set<? extends AbstractInsnNode>> buckets, String key, AbstractInsnNode insn) {
+            final Set<? extends AbstractInsnNode> bucket = buckets.get(key);
+            return bucket != null && bucket.remove(insn);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package net.mine_diver.sarcasm.util;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Reads and writes the class pointer in HotSpot object headers.
+ *
+ * <p>
+ *     The class pointer takes 4 bytes if {@code UseCompressedClassPointers} is on, and 8 otherwise.
+ *     Since Java 15 that's independent of compressed oops, so the VM option itself is read
+ *     instead of inferring it from the reference size.
+ *     If it can't be determined, for example on another VM, a 32-bit VM or with compact object headers,
+ *     the class pointer is unsupported and must not be touched.
+ * </p>
+ */
+public final class KlassPointer {
+    private static final long OFFSET = 8L;
+    private static final int SIZE = readSize();
+
+    private KlassPointer() {}
+
+    private static int readSize() {
+        if (!"64".equals(System.getProperty("sun.arch.data.model"))) return 0;
+        try {
+            final HotSpotDiagnosticMXBean diagnostics = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            if (diagnostics == null) return 0;
+            // compact object headers keep the class pointer in the mark word
+            try {
+                if (Boolean.parseBoolean(diagnostics.getVMOption("UseCompactObjectHeaders").getValue())) return 0;
+            } catch (final IllegalArgumentException e) {
+                // older VMs don't have the option
+            }
+            return Boolean.parseBoolean(diagnostics.getVMOption("UseCompressedClassPointers").getValue()) ? 4 : 8;
+        } catch (final RuntimeException | LinkageError e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return whether the class pointer layout of this VM is known
+     */
+    public static boolean isSupported() {
+        return SIZE != 0;
+    }
+
+    /**
+     * Reads the class pointer of the instance as it's stored, compressed or not,
+     * so it can be {@linkplain #write(Object, long) written} into other instances.
+     * It stays the same for as long as the class is loaded.
+     *
+     * @param instance the instance
+     * @return the class pointer
+     * @throws IllegalStateException if the class pointer layout isn't known
+     */
+    public static long read(final Object instance) {
+        switch (SIZE) {
+            case 4:
+                return Util.UNSAFE.getInt(instance, OFFSET) & 0xFFFFFFFFL;
+            case 8:
+                return Util.UNSAFE.getLong(instance, OFFSET);
+            default:
+                throw new IllegalStateException("Class pointer layout of this VM is unknown!");
+        }
+    }
+
+    /**
+     * Makes the target an instance of the class the class pointer was {@linkplain #read(Object) read} from.
+     * Both classes must have the same instance layout.
+     *
+     * @param target the instance to retype
+     * @param klass the class pointer
+     * @throws IllegalStateException if the class pointer layout isn't known
+     */
+    public static void write(final Object target, final long klass) {
+        switch (SIZE) {
+            case 4:
+                Util.UNSAFE.putIntVolatile(target, OFFSET, (int) klass);
+                break;
+            case 8:
+                Util.UNSAFE.putLongVolatile(target, OFFSET, klass);
+                break;
+            default:
+                throw new IllegalStateException("Class pointer layout of this VM is unknown!");
+        }
+    }
+
+    /**
+     * Returns the address of the instance's {@code Klass}.
+     * Compressed class pointers are decoded assuming a zero base and a shift of 3.
+     *
+     * @param instance the instance
+     * @return the {@code Klass} address
+     * @throws IllegalStateException if the class pointer layout isn't known
+     */
+    public static long getKlass(final Object instance) {
+        switch (SIZE) {
+            case 4:
+                return read(instance) << 3;
+            case 8:
+                return read(instance);
+            default:
+                throw new IllegalStateException("Class pointer layout of this VM is unknown!");
+        }
+    }
+}
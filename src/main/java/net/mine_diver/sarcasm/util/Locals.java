@@ -24,6 +24,8 @@
  */
 package net.mine_diver.sarcasm.util;
 
+import net.mine_diver.sarcasm.metrics.Metrics;
+import net.mine_diver.sarcasm.util.collection.BoundedCache;
 import net.mine_diver.sarcasm.util.exception.LVTGeneratorError;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
@@ -232,11 +234,66 @@ public final class Locals {
 
     }
 
+    /**
+     * Number of instructions between two checkpoints of a {@link LocalsIndex},
+     * a single query replays at most this many instructions
+     */
+    private static final int CHECKPOINT_INTERVAL = Math.max(1, Integer.getInteger("sarcasm.locals.checkpointInterval", 32));
+
+    /**
+     * Maximum number of entries kept in each of the caches below
+     */
+    private static final int CACHE_SIZE = Math.max(1, Integer.getInteger("sarcasm.locals.cacheSize", 512));
+
     /**
      * Cached local variable lists, to avoid having to recalculate them
      * (expensive) if multiple injectors are working with the same method
      */
-    private static final Map<String, List<LocalVariableNode>> calculatedLocalVariables = new HashMap<>();
+    private static final BoundedCache<String, List<LocalVariableNode>> calculatedLocalVariables = Metrics.registerCache("cache.locals.localVariableTables", new BoundedCache<>(CACHE_SIZE));
+
+    /**
+     * Cached locals indexes, to answer repeated queries against the same
+     * method without replaying it from the first instruction
+     */
+    private static final BoundedCache<MethodNode, LocalsIndex> localsIndexes = Metrics.registerCache("cache.locals.indexes", new BoundedCache<>(CACHE_SIZE));
+
+    /**
+     * @return the cache of generated local variable tables, exposed for
+     *      monitoring
+     */
+    public static BoundedCache<String, List<LocalVariableNode>> getLocalVariableTableCache() {
+        return Locals.calculatedLocalVariables;
+    }
+
+    /**
+     * @return the cache of locals indexes, exposed for monitoring
+     */
+    public static BoundedCache<?, ?> getLocalsIndexCache() {
+        return Locals.localsIndexes;
+    }
+
+    /**
+     * Drops the cached locals indexes of all methods of the specified class
+     * node, so they don't keep the node alive once it's no longer
+     * transformed.
+     *
+     * @param classNode Class node to release
+     */
+    public static void release(ClassNode classNode) {
+        Locals.localsIndexes.removeIf((method, index) -> index.classNode == classNode);
+    }
+
+    /**
+     * Drops the cached locals index of the specified method. Indexes detect
+     * modifications of the instruction list on their own, but callers which
+     * change an instruction itself (eg. assigning {@link VarInsnNode#var})
+     * should invalidate the method explicitly.
+     *
+     * @param method Method to invalidate
+     */
+    public static void invalidate(MethodNode method) {
+        Locals.localsIndexes.remove(method);
+    }
 
     /**
      * <p>Attempts to identify available locals at an arbitrary point in the
@@ -269,6 +326,11 @@ public final class Locals {
      * or any upstream transformers. I may have to re-think this strategy if
      * this situation is encountered in the wild.</p>
      *
+     * <p>The first query against a method replaces a plain instruction list
+     * with one that counts its modifications, the same way {@link InsnIndex}
+     * does, so references to {@link MethodNode#instructions} taken before the
+     * query have to be read again from the method.</p>
+     *
      * @param classNode ClassNode containing the method, used to initialise the
      *      implicit "this" reference in simple methods with no stack frames
      * @param method MethodNode to explore
@@ -282,30 +344,194 @@ public final class Locals {
      *      specified location
      */
     public static LocalVariableNode[] getLocalsAt(ClassNode classNode, MethodNode method, AbstractInsnNode node, Settings settings) {
-        List<FrameData> frames = gatherFrames(method);
+        InsnIndex.countModifications(method);
+        LocalsIndex index = Locals.localsIndexes.get(method);
+        if (index == null || !index.isCurrent(classNode, method, settings)) {
+            index = LocalsIndex.build(classNode, method, settings);
+            Locals.localsIndexes.put(method, index);
+        }
+        LocalVariableNode[] frame = index.getLocalsAt(node);
+        if (frame == null) {
+            // The method changed behind the index's back in a way the version
+            // check couldn't see, the rebuilt index is guaranteed to be current
+            index = LocalsIndex.build(classNode, method, settings);
+            Locals.localsIndexes.put(method, index);
+            frame = index.getLocalsAt(node);
+        }
+        return frame;
+    }
+
+    /**
+     * A per-method index of the <tt>getLocalsAt</tt> state machine. The
+     * method is walked once and the state is checkpointed every {@link
+     * #CHECKPOINT_INTERVAL} instructions, so a query only has to replay the
+     * instructions between the closest preceding checkpoint and the queried
+     * node.
+     *
+     * <p>An index is only valid for the version of the method it was built
+     * from, which is the modification count of its instruction list, so
+     * checking it doesn't depend on the size of the method. Replays
+     * additionally verify that the instructions they walk are still linked
+     * together.</p>
+     */
+    static final class LocalsIndex {
+
+        final ClassNode classNode;
+        final Settings settings;
+        final InsnList instructions;
+        final long modifications;
+        final AbstractInsnNode[] insns;
+        final Map<AbstractInsnNode, Integer> positions;
+        final LocalsState[] checkpoints;
+
+        private LocalsIndex(ClassNode classNode, Settings settings, InsnList instructions, long modifications, AbstractInsnNode[] insns, LocalsState[] checkpoints) {
+            this.classNode = classNode;
+            this.settings = settings;
+            this.instructions = instructions;
+            this.modifications = modifications;
+            this.insns = insns;
+            this.checkpoints = checkpoints;
+            this.positions = new IdentityHashMap<>(insns.length);
+            for (int i = 0; i < insns.length; i++) {
+                this.positions.put(insns[i], i);
+            }
+        }
 
-        LocalVariableNode[] frame = new LocalVariableNode[method.maxLocals];
-        int local = 0, index = 0;
+        static LocalsIndex build(ClassNode classNode, MethodNode method, Settings settings) {
+            LocalsIndex index;
+            int attempts = 0;
+            do {
+                // Generating the LVT inserts labels into the method the first time it's required, which
+                // invalidates the index. The generated table is cached, so the second attempt is stable
+                index = LocalsIndex.walk(classNode, method, settings);
+            } while (!index.isCurrent(classNode, method, settings) && ++attempts < 2);
+            return index;
+        }
 
-        // Initialise implicit "this" reference in non-static methods
-        if ((method.access & Opcodes.ACC_STATIC) == 0) {
-            frame[local++] = new LocalVariableNode("this", Type.getObjectType(classNode.name).toString(), null, null, null, 0);
+        private static LocalsIndex walk(ClassNode classNode, MethodNode method, Settings settings) {
+            InsnList instructions = method.instructions;
+            long modifications = InsnIndex.getModificationCount(instructions);
+            AbstractInsnNode[] insns = instructions.toArray();
+            LocalsState[] checkpoints = new LocalsState[(insns.length + CHECKPOINT_INTERVAL - 1) / CHECKPOINT_INTERVAL + 1];
+            LocalsState state = new LocalsState(classNode, method, settings);
+            for (int i = 0; i < insns.length; i++) {
+                if (i % CHECKPOINT_INTERVAL == 0) {
+                    checkpoints[i / CHECKPOINT_INTERVAL] = state.copy();
+                }
+                state.step(insns[i]);
+            }
+            // The final state answers queries for nodes outside of the method
+            checkpoints[checkpoints.length - 1] = state;
+            return new LocalsIndex(classNode, settings, instructions, modifications, insns, checkpoints);
         }
 
-        // Initialise method arguments
-        for (Type argType : Type.getArgumentTypes(method.desc)) {
-            frame[local] = new LocalVariableNode("arg" + index++, argType.toString(), null, null, null, local);
-            local += argType.getSize();
+        boolean isCurrent(ClassNode classNode, MethodNode method, Settings settings) {
+            return this.classNode == classNode && this.settings == settings && method.instructions == this.instructions
+                    && InsnIndex.getModificationCount(method.instructions) == this.modifications;
         }
 
-        final int initialFrameSize = local;
-        int frameSize = local;
-        int frameIndex = -1;
-        int lastFrameSize = local;
-        int knownFrameSize = local;
-        VarInsnNode storeInsn = null;
+        /**
+         * @param node Node to get the locals at
+         * @return the locals at the node, or null if the method was modified
+         *      since the index was built
+         */
+        LocalVariableNode[] getLocalsAt(AbstractInsnNode node) {
+            Integer position = this.positions.get(node);
+            if (position == null) {
+                // Same as walking the whole method without ever meeting the node
+                return this.checkpoints[this.checkpoints.length - 1].copy().finish();
+            }
 
-        for (AbstractInsnNode insn : method.instructions) {
+            int from = position / CHECKPOINT_INTERVAL * CHECKPOINT_INTERVAL;
+            LocalsState state = this.checkpoints[position / CHECKPOINT_INTERVAL].copy();
+            for (int i = from; i <= position; i++) {
+                AbstractInsnNode insn = this.insns[i];
+                if (insn.getNext() != (i + 1 < this.insns.length ? this.insns[i + 1] : null)) {
+                    return null;
+                }
+                state.step(insn);
+            }
+            return state.finish();
+        }
+    }
+
+    /**
+     * State of the <tt>getLocalsAt</tt> state machine between two
+     * instructions
+     */
+    static final class LocalsState {
+
+        final ClassNode classNode;
+        final MethodNode method;
+        final Settings settings;
+        final List<FrameData> frames;
+        final int initialFrameSize;
+
+        LocalVariableNode[] frame;
+        int frameSize;
+        int frameIndex;
+        int lastFrameSize;
+        int knownFrameSize;
+        VarInsnNode storeInsn;
+
+        LocalsState(ClassNode classNode, MethodNode method, Settings settings) {
+            this.classNode = classNode;
+            this.method = method;
+            this.settings = settings;
+            this.frames = gatherFrames(method);
+
+            LocalVariableNode[] frame = new LocalVariableNode[method.maxLocals];
+            int local = 0, index = 0;
+
+            // Initialise implicit "this" reference in non-static methods
+            if ((method.access & Opcodes.ACC_STATIC) == 0) {
+                frame[local++] = new LocalVariableNode("this", Type.getObjectType(classNode.name).toString(), null, null, null, 0);
+            }
+
+            // Initialise method arguments
+            for (Type argType : Type.getArgumentTypes(method.desc)) {
+                frame[local] = new LocalVariableNode("arg" + index++, argType.toString(), null, null, null, local);
+                local += argType.getSize();
+            }
+
+            this.frame = frame;
+            this.initialFrameSize = local;
+            this.frameSize = local;
+            this.frameIndex = -1;
+            this.lastFrameSize = local;
+            this.knownFrameSize = local;
+        }
+
+        private LocalsState(LocalsState state) {
+            this.classNode = state.classNode;
+            this.method = state.method;
+            this.settings = state.settings;
+            this.frames = state.frames;
+            this.initialFrameSize = state.initialFrameSize;
+            this.frame = state.frame.clone();
+            this.frameSize = state.frameSize;
+            this.frameIndex = state.frameIndex;
+            this.lastFrameSize = state.lastFrameSize;
+            this.knownFrameSize = state.knownFrameSize;
+            this.storeInsn = state.storeInsn;
+
+            // Zombies age as the state machine runs, so they can't be shared between states
+            for (int l = 0; l < this.frame.length; l++) {
+                if (this.frame[l] instanceof ZombieLocalVariableNode) {
+                    ZombieLocalVariableNode zombie = (ZombieLocalVariableNode) this.frame[l];
+                    ZombieLocalVariableNode copy = new ZombieLocalVariableNode(zombie.ancestor, zombie.type);
+                    copy.lifetime = zombie.lifetime;
+                    copy.frames = zombie.frames;
+                    this.frame[l] = copy;
+                }
+            }
+        }
+
+        LocalsState copy() {
+            return new LocalsState(this);
+        }
+
+        void step(AbstractInsnNode insn) {
             // Tick the zombies
             for (LocalVariableNode localVariableNode : frame) {
                 if (localVariableNode instanceof ZombieLocalVariableNode) {
@@ -436,28 +662,26 @@ public final class Locals {
                     storeInsn = varInsn;
                 }
             }
-
-            if (insn == node) {
-                break;
-            }
         }
 
-        // Null out any "unknown" or mixin-provided locals
-        for (int l = 0; l < frame.length; l++) {
-            if (frame[l] instanceof ZombieLocalVariableNode) {
-                ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)frame[l];
-                // preserve zombies where the frame node which culled them was immediately prior to
-                // the matched instruction, or *was itself* the matched instruction, the returned
-                // frame will contain the original node (the zombie ancestor)
-                frame[l] = (zombie.lifetime > 1) ? null : zombie.ancestor;
-            }
+        LocalVariableNode[] finish() {
+            // Null out any "unknown" or mixin-provided locals
+            for (int l = 0; l < frame.length; l++) {
+                if (frame[l] instanceof ZombieLocalVariableNode) {
+                    ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)frame[l];
+                    // preserve zombies where the frame node which culled them was immediately prior to
+                    // the matched instruction, or *was itself* the matched instruction, the returned
+                    // frame will contain the original node (the zombie ancestor)
+                    frame[l] = (zombie.lifetime > 1) ? null : zombie.ancestor;
+                }
 
-            if ((frame[l] != null && frame[l].desc == null) || frame[l] instanceof SyntheticLocalVariableNode) {
-                frame[l] = null;
+                if ((frame[l] != null && frame[l].desc == null) || frame[l] instanceof SyntheticLocalVariableNode) {
+                    frame[l] = null;
+                }
             }
-        }
 
-        return frame;
+            return frame;
+        }
     }
 
     private static List<FrameData> gatherFrames(MethodNode method) {
@@ -573,14 +797,7 @@ public final class Locals {
      */
     public static List<LocalVariableNode> getGeneratedLocalVariableTable(ClassNode classNode, MethodNode method) {
         String methodId = String.format("%s.%s%s", classNode.name, method.name, method.desc);
-        List<LocalVariableNode> localVars = Locals.calculatedLocalVariables.get(methodId);
-        if (localVars != null) {
-            return localVars;
-        }
-
-        localVars = Locals.generateLocalVariableTable(classNode, method);
-        Locals.calculatedLocalVariables.put(methodId, localVars);
-        return Collections.unmodifiableList(localVars);
+        return Collections.unmodifiableList(Locals.calculatedLocalVariables.computeIfAbsent(methodId, id -> Locals.generateLocalVariableTable(classNode, method)));
     }
 
     /**
@@ -1,9 +1,10 @@
 package net.mine_diver.sarcasm.util;
 
+import net.mine_diver.sarcasm.metrics.Metrics;
 import net.mine_diver.sarcasm.util.collection.SoftReferenceCache;
 
 public final class Namespace {
-    private static final SoftReferenceCache<String, Namespace> CACHE = new SoftReferenceCache<>(Namespace::new);
+    private static final SoftReferenceCache<String, Namespace> CACHE = Metrics.registerCache("cache.namespaces", new SoftReferenceCache<>(Namespace::new));
 
     public static final Namespace GLOBAL = of("global");
 
@@ -0,0 +1,119 @@
+package net.mine_diver.sarcasm.util.collection;
+
+import net.mine_diver.sarcasm.metrics.Metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A thread-safe cache that evicts its least recently used entry
+ * once it grows beyond its maximum size, and counts its hits, misses and evictions
+ * if {@linkplain Metrics#ENABLED metrics are enabled}.
+ *
+ * <p>Values are computed outside the lock, so two threads missing
+ * the same key at once may both compute it, but only the first value is kept.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public final class BoundedCache<K, V> implements CacheStatistics {
+    private final int maximumSize;
+    private final Map<K, V> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedCache(int maximumSize) {
+        if (maximumSize <= 0) throw new IllegalArgumentException("Maximum cache size must be positive, got " + maximumSize);
+        this.maximumSize = maximumSize;
+        cache = new LinkedHashMap<K, V>(16, .75F, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() <= BoundedCache.this.maximumSize) return false;
+                if (Metrics.ENABLED) evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    public V get(K key) {
+        final V value;
+        synchronized (cache) {
+            value = cache.get(key);
+        }
+        if (Metrics.ENABLED) (value == null ? misses : hits).increment();
+        return value;
+    }
+
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> factory) {
+        final V cached = get(key);
+        if (cached != null) return cached;
+        final V value = factory.apply(key);
+        if (value == null) return null;
+        synchronized (cache) {
+            final V raced = cache.putIfAbsent(key, value);
+            return raced == null ? value : raced;
+        }
+    }
+
+    public void put(K key, V value) {
+        synchronized (cache) {
+            cache.put(key, value);
+        }
+    }
+
+    public void remove(K key) {
+        synchronized (cache) {
+            cache.remove(key);
+        }
+    }
+
+    public void removeIf(Predicate<? super K> filter) {
+        synchronized (cache) {
+            cache.keySet().removeIf(filter);
+        }
+    }
+
+    public void removeIf(BiPredicate<? super K, ? super V> filter) {
+        synchronized (cache) {
+            cache.entrySet().removeIf(entry -> filter.test(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    @Override
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+}
@@ -0,0 +1,20 @@
+package net.mine_diver.sarcasm.util.collection;
+
+/**
+ * A cache that counts how well it performs.
+ *
+ * <p>Hits and misses are only counted if {@linkplain net.mine_diver.sarcasm.metrics.Metrics#ENABLED metrics are enabled}.
+ */
+public interface CacheStatistics {
+    int size();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    default double getHitRate() {
+        final long hits = getHitCount();
+        final long total = hits + getMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,100 @@
+package net.mine_diver.sarcasm.util.collection;
+
+import net.mine_diver.sarcasm.util.ClassPattern;
+
+import java.lang.annotation.Annotation;
+import java.util.*;
+
+/**
+ * Maps {@link ClassPattern}s to values and finds the values matching a class
+ * without scanning every registered pattern.
+ *
+ * <p>
+ *     Package patterns are kept in a trie of package segments,
+ *     supertype and annotation patterns in maps keyed by the type,
+ *     so matching a class costs its package depth plus the size of its type hierarchy and annotations.
+ *     Matches are returned in registration order.
+ * </p>
+ *
+ * @param <V> the value type
+ */
+public final class ClassPatternIndex<V> {
+    private final PackageNode<V> packages = new PackageNode<>();
+    private final Map<Class<?>, List<Entry<V>>> supertypes = new IdentityHashMap<>();
+    private final Map<Class<?>, List<Entry<V>>> annotations = new IdentityHashMap<>();
+    private long nextOrder;
+    private int size;
+
+    public synchronized void add(ClassPattern pattern, V value) {
+        final Entry<V> entry = new Entry<>(nextOrder++, Objects.requireNonNull(value));
+        switch (pattern.kind) {
+            case PACKAGE:
+                PackageNode<V> node = packages;
+                for (final String segment : ((String) pattern.value).split("\\."))
+                    node = node.children.computeIfAbsent(segment, s -> new PackageNode<>());
+                node.entries.add(entry);
+                break;
+            case SUPERTYPE:
+                supertypes.computeIfAbsent((Class<?>) pattern.value, type -> new ArrayList<>()).add(entry);
+                break;
+            case ANNOTATION:
+                annotations.computeIfAbsent((Class<?>) pattern.value, type -> new ArrayList<>()).add(entry);
+                break;
+            default:
+                throw new IllegalStateException("Unknown pattern kind " + pattern.kind + "!");
+        }
+        size++;
+    }
+
+    public synchronized List<V> match(Class<?> type) {
+        if (size == 0) return Collections.emptyList();
+        final List<Entry<V>> matches = new ArrayList<>();
+        matchPackage(type.getName(), matches);
+        if (!supertypes.isEmpty()) matchSupertypes(type, matches, Collections.newSetFromMap(new IdentityHashMap<>()));
+        if (!annotations.isEmpty()) for (final Annotation annotation : type.getAnnotations()) {
+            final List<Entry<V>> entries = annotations.get(annotation.annotationType());
+            if (entries != null) matches.addAll(entries);
+        }
+        if (matches.isEmpty()) return Collections.emptyList();
+        matches.sort(Comparator.comparingLong(entry -> entry.order));
+        final List<V> values = new ArrayList<>(matches.size());
+        for (final Entry<V> entry : matches) values.add(entry.value);
+        return values;
+    }
+
+    private void matchPackage(String className, List<Entry<V>> matches) {
+        PackageNode<V> node = packages;
+        int start = 0;
+        int end;
+        // the last segment is the simple name, which isn't part of the package
+        while ((end = className.indexOf('.', start)) != -1) {
+            node = node.children.get(className.substring(start, end));
+            if (node == null) return;
+            matches.addAll(node.entries);
+            start = end + 1;
+        }
+    }
+
+    private void matchSupertypes(Class<?> type, List<Entry<V>> matches, Set<Class<?>> visited) {
+        if (type == null || !visited.add(type)) return;
+        final List<Entry<V>> entries = supertypes.get(type);
+        if (entries != null) matches.addAll(entries);
+        matchSupertypes(type.getSuperclass(), matches, visited);
+        for (final Class<?> anInterface : type.getInterfaces()) matchSupertypes(anInterface, matches, visited);
+    }
+
+    private static final class PackageNode<V> {
+        private final Map<String, PackageNode<V>> children = new HashMap<>();
+        private final List<Entry<V>> entries = new ArrayList<>();
+    }
+
+    private static final class Entry<V> {
+        private final long order;
+        private final V value;
+
+        private Entry(long order, V value) {
+            this.order = order;
+            this.value = value;
+        }
+    }
+}
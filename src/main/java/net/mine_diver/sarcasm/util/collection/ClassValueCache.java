@@ -0,0 +1,57 @@
+package net.mine_diver.sarcasm.util.collection;
+
+import net.mine_diver.sarcasm.metrics.Metrics;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A cache of values computed once per class.
+ *
+ * <p>
+ *     Values are stored with {@link ClassValue}, so they can reference their class
+ *     without keeping it or its class loader alive.
+ * </p>
+ *
+ * @param <V> the value type
+ */
+public final class ClassValueCache<V> implements CacheStatistics {
+    private final ClassValue<V> values;
+    private final Set<Class<?>> classes = Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<>()));
+    private final LongAdder gets = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ClassValueCache(Function<Class<?>, V> factory) {
+        values = new ClassValue<V>() {
+            @Override
+            protected V computeValue(Class<?> type) {
+                if (Metrics.ENABLED) misses.increment();
+                classes.add(type);
+                return factory.apply(type);
+            }
+        };
+    }
+
+    public V get(Class<?> key) {
+        if (Metrics.ENABLED) gets.increment();
+        return values.get(key);
+    }
+
+    @Override
+    public int size() {
+        return classes.size();
+    }
+
+    @Override
+    public long getHitCount() {
+        return gets.sum() - misses.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+}
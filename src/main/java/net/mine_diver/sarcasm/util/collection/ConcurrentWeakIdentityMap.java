@@ -0,0 +1,72 @@
+package net.mine_diver.sarcasm.util.collection;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A concurrent map that compares keys by identity and only holds them weakly.
+ * Entries of collected keys are expunged on the next write.
+ *
+ * <p>Values are held strongly, so a value referencing its own key keeps the entry alive.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public final class ConcurrentWeakIdentityMap<K, V> {
+    private final ConcurrentMap<Key<K>, V> map = new ConcurrentHashMap<>();
+    private final ReferenceQueue<K> queue = new ReferenceQueue<>();
+
+    public V get(K key) {
+        return map.get(new Key<>(key, null));
+    }
+
+    public void put(K key, V value) {
+        expunge();
+        map.put(new Key<>(key, queue), value);
+    }
+
+    public void remove(K key) {
+        expunge();
+        map.remove(new Key<>(key, null));
+    }
+
+    public void clear() {
+        map.clear();
+        expunge();
+    }
+
+    public int size() {
+        expunge();
+        return map.size();
+    }
+
+    private void expunge() {
+        Reference<? extends K> reference;
+        while ((reference = queue.poll()) != null) map.remove(reference);
+    }
+
+    private static final class Key<K> extends WeakReference<K> {
+        private final int hashCode;
+
+        private Key(K referent, ReferenceQueue<K> queue) {
+            super(referent, queue);
+            hashCode = System.identityHashCode(referent);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            final Object referent = get();
+            return referent != null && referent == ((Key<?>) obj).get();
+        }
+    }
+}
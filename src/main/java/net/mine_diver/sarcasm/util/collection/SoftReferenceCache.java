@@ -1,16 +1,21 @@
 package net.mine_diver.sarcasm.util.collection;
 
+import net.mine_diver.sarcasm.metrics.Metrics;
+
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
-public final class SoftReferenceCache<K, V> {
+public final class SoftReferenceCache<K, V> implements CacheStatistics {
     private final ConcurrentMap<K, Reference<V>> cache = new ConcurrentHashMap<>();
     private final BiFunction<K, Reference<V>, Reference<V>> referenceValidator;
+    private final LongAdder gets = new LongAdder();
+    private final LongAdder misses = new LongAdder();
 
     public SoftReferenceCache(Function<K, V> factory) {
         final ReferenceQueue<V> queue = new ReferenceQueue<>();
@@ -23,7 +28,11 @@ public final class SoftReferenceCache<K, V> {
             }
         }
         Function<K, Reference<V>> referenceFactory = k -> new CacheReference(factory.apply(k), k);
-        referenceValidator = (k, reference) -> reference == null || reference.get() == null ? referenceFactory.apply(k) : reference;
+        referenceValidator = (k, reference) -> {
+            if (reference != null && reference.get() != null) return reference;
+            if (Metrics.ENABLED) misses.increment();
+            return referenceFactory.apply(k);
+        };
         Thread cleanupThread = new Thread(() -> {
             while (true) try {
                 //noinspection unchecked
@@ -35,6 +44,22 @@ public final class SoftReferenceCache<K, V> {
     }
 
     public V get(K key) {
+        if (Metrics.ENABLED) gets.increment();
         return cache.compute(key, referenceValidator).get();
     }
+
+    @Override
+    public int size() {
+        return cache.size();
+    }
+
+    @Override
+    public long getHitCount() {
+        return gets.sum() - misses.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
 }
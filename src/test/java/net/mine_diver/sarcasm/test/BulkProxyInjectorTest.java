@@ -0,0 +1,52 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.injector.BulkProxyInjector;
+import net.mine_diver.sarcasm.transformer.ProxyTransformer;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkProxyInjectorTest {
+    public static class Entry {
+        public String name() {
+            return "entry";
+        }
+    }
+
+    public static class NameRequester implements ProxyTransformer {
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "name()Ljava/lang/String;" };
+        }
+
+        @Override
+        public void transform(ClassNode node) {}
+    }
+
+    @Test
+    void arraysAndListsAreInjectedInPlace() {
+        final Entry shared = new Entry();
+        final Entry[] array = { shared, null, new Entry(), shared };
+        final List<Entry> list = new ArrayList<>(Arrays.asList(new Entry(), new Entry()));
+        SarcASM.setInPlaceInjection(Entry.class, false);
+        SarcASM.registerBulkInjector(Entry.class, BulkProxyInjector.ofArray(array));
+        SarcASM.registerBulkInjector(Entry.class, BulkProxyInjector.ofList(list));
+        SarcASM.getManager(Entry.class).register(new NameRequester());
+
+        assertNull(array[1]);
+        for (final Entry entry : new Entry[] { array[0], array[2], array[3], list.get(0), list.get(1) }) {
+            assertNotSame(Entry.class, entry.getClass());
+            assertTrue(SarcASM.isCurrent(entry));
+        }
+        // a target listed twice gets a single proxy
+        assertSame(array[0], array[3]);
+        assertNotSame(array[0], array[2]);
+        assertEquals(2, list.size());
+    }
+}
@@ -0,0 +1,44 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.util.ByteArena;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteArenaTest {
+    @Test
+    void releasedBlocksAreFreedOnce() {
+        final ByteArena arena = new ByteArena();
+        final byte[] bytes = { 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+        final ByteArena.Block block = arena.store(bytes);
+        assertEquals(9, arena.getFootprint());
+        assertArrayEquals(bytes, block.toByteArray());
+        assertTrue(block.contentEquals(bytes));
+
+        block.release();
+        block.release();
+        assertEquals(0, arena.getFootprint());
+        assertEquals(0, arena.getBlockCount());
+        assertThrows(IllegalStateException.class, block::toByteArray);
+    }
+
+    private static void storeAndDrop(ByteArena arena) {
+        arena.store(new byte[1024]);
+    }
+
+    @Test
+    void unreachableBlocksAreFreed() throws InterruptedException {
+        final ByteArena arena = new ByteArena();
+        final ByteArena.Block kept = arena.store(new byte[16]);
+        storeAndDrop(arena);
+        assertEquals(2, arena.getBlockCount());
+        for (int i = 0; i < 50 && arena.getBlockCount() > 1; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(1, arena.getBlockCount());
+        assertEquals(16, arena.getFootprint());
+        kept.release();
+        assertEquals(0, arena.getBlockCount());
+    }
+}
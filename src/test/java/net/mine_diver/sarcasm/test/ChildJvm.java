@@ -0,0 +1,57 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.SarcASM;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.util.Textifier;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// runs a main class in a fresh JVM, for behavior that's configured once per process by system properties
+final class ChildJvm {
+    static String run(Class<?> mainClass, List<String> jvmOptions, String... args) throws IOException, InterruptedException {
+        return run(mainClass, jvmOptions, Collections.emptyList(), args);
+    }
+
+    static String run(Class<?> mainClass, List<String> jvmOptions, List<File> extraClassPath, String... args) throws IOException, InterruptedException {
+        final Set<String> classPath = new LinkedHashSet<>();
+        for (final File file : extraClassPath) classPath.add(file.getPath());
+        for (final Class<?> classObject : new Class<?>[] { mainClass, SarcASM.class, ClassReader.class, ClassNode.class, Analyzer.class, GeneratorAdapter.class, Textifier.class })
+            try {
+                classPath.add(new File(classObject.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath());
+            } catch (final URISyntaxException e) {
+                throw new IllegalStateException(e);
+            }
+        final List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(String.join(File.pathSeparator, classPath));
+        command.add(mainClass.getName());
+        command.addAll(Arrays.asList(args));
+        final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            final String result = output.lines().collect(Collectors.joining("\n"));
+            assertEquals(0, process.waitFor(), result);
+            return result;
+        }
+    }
+
+    private ChildJvm() {}
+}
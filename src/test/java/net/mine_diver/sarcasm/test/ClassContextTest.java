@@ -0,0 +1,54 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.transformer.ClassContext;
+import net.mine_diver.sarcasm.transformer.ProxyMethodTransformer;
+import net.mine_diver.sarcasm.util.ASMHelper;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.util.Textifier;
+
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.objectweb.asm.Opcodes.ALOAD;
+
+class ClassContextTest {
+    public static class AloadCounter implements ProxyMethodTransformer {
+        private final String[] methods = ASMHelper.readClassNode(Textifier.class).methods
+                .stream()
+                .filter(method -> (method.access & (Modifier.STATIC | Modifier.FINAL | Modifier.PRIVATE)) == 0 && !method.name.startsWith("<"))
+                .map(ASMHelper::toTarget)
+                .toArray(String[]::new);
+        private final Set<String> transformed = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger foreign = new AtomicInteger();
+
+        @Override
+        public String[] getRequestedMethods() {
+            return methods;
+        }
+
+        @Override
+        public void transformMethod(ClassContext context, MethodNode method) {
+            for (final AbstractInsnNode insn : context.getInsnIndex().getByOpcode(method, ALOAD))
+                if (!method.instructions.contains(insn)) foreign.incrementAndGet();
+            transformed.add(method.name + method.desc);
+        }
+    }
+
+    @Test
+    void methodScopedQueriesOnlySeeTheirMethod() {
+        final AloadCounter transformer = new AloadCounter();
+        SarcASM.getManager(Textifier.class).register(transformer);
+        final byte[] first = SarcASM.generateProxyBytes(Textifier.class);
+        // private helpers called by the requested methods are copied into the proxy too
+        assertTrue(transformer.transformed.containsAll(Arrays.asList(transformer.methods)));
+        assertEquals(0, transformer.foreign.get());
+        assertArrayEquals(first, SarcASM.generateProxyBytes(Textifier.class));
+    }
+}
@@ -0,0 +1,105 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.injector.ProxyInjector;
+import net.mine_diver.sarcasm.transformer.ProxyTransformer;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassLoaderReclaimTest {
+    public static class Plugin {
+        public String name() {
+            return "plugin";
+        }
+    }
+
+    public static class NameRequester implements ProxyTransformer {
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "name()Ljava/lang/String;" };
+        }
+
+        @Override
+        public void transform(ClassNode node) {}
+    }
+
+    public static class Holder<T> implements ProxyInjector<T> {
+        private T instance;
+
+        private Holder(T instance) {
+            this.instance = instance;
+        }
+
+        @Override
+        public T getTargetInstance() {
+            return instance;
+        }
+
+        @Override
+        public void inject(T proxyInstance) {
+            instance = proxyInstance;
+        }
+    }
+
+    // defines its own copy of the plugin class
+    private static final class PluginLoader extends ClassLoader {
+        private PluginLoader() {
+            super(ClassLoaderReclaimTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(Plugin.class.getName())) return super.loadClass(name, resolve);
+            synchronized (getClassLoadingLock(name)) {
+                final Class<?> loaded = findLoadedClass(name);
+                if (loaded != null) return loaded;
+                try (InputStream stream = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    final byte[] buffer = new byte[4096];
+                    for (int read; (read = stream.read(buffer)) != -1;) bytes.write(buffer, 0, read);
+                    return defineClass(name, bytes.toByteArray(), 0, bytes.size());
+                } catch (final IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+        }
+    }
+
+    private static <T> void usePlugin(Class<T> pluginClass) throws ReflectiveOperationException {
+        final T instance = pluginClass.getDeclaredConstructor().newInstance();
+        final Holder<T> holder = new Holder<>(instance);
+        SarcASM.setInPlaceInjection(pluginClass, false);
+        SarcASM.registerInjector(pluginClass, holder);
+        SarcASM.getManager(pluginClass).register(new NameRequester());
+        assertNotSame(instance, holder.getTargetInstance());
+        assertTrue(SarcASM.isCurrent(holder.getTargetInstance()));
+        assertNotSame(pluginClass, SarcASM.newUntrackedProxy(() -> instance).getClass());
+        SarcASM.getProxyFingerprint(pluginClass);
+        assertTrue(SarcASM.currentEpoch(pluginClass) > 0);
+    }
+
+    private static WeakReference<ClassLoader> loadAndDropPlugin() throws ReflectiveOperationException {
+        final ClassLoader loader = new PluginLoader();
+        final Class<?> pluginClass = loader.loadClass(Plugin.class.getName());
+        assertNotSame(Plugin.class, pluginClass);
+        usePlugin(pluginClass);
+        return new WeakReference<>(loader);
+    }
+
+    @Test
+    void droppedLoaderIsCollected() throws ReflectiveOperationException, InterruptedException {
+        final WeakReference<ClassLoader> loader = loadAndDropPlugin();
+        for (int i = 0; i < 50 && loader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(loader.get());
+    }
+}
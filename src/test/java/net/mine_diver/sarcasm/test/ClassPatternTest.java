@@ -0,0 +1,67 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.transformer.ProxyTransformer;
+import net.mine_diver.sarcasm.util.ClassPattern;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassPatternTest {
+    public static class Base {}
+
+    public static class Sub extends Base {}
+
+    public static class Unrelated {}
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Marked {}
+
+    @Marked
+    public static class Annotated {}
+
+    public static class NoopTransformer implements ProxyTransformer {
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[0];
+        }
+
+        @Override
+        public void transform(ClassNode node) {}
+    }
+
+    @Test
+    void matchesByKind() {
+        assertTrue(ClassPattern.subtypeOf(Base.class).matches(Sub.class));
+        assertFalse(ClassPattern.subtypeOf(Base.class).matches(Unrelated.class));
+        assertTrue(ClassPattern.annotatedWith(Marked.class).matches(Annotated.class));
+        assertFalse(ClassPattern.annotatedWith(Marked.class).matches(Sub.class));
+        assertTrue(ClassPattern.inPackage("net.mine_diver").matches(Sub.class));
+        assertFalse(ClassPattern.inPackage("net.mine").matches(Sub.class));
+        assertThrows(IllegalArgumentException.class, () -> ClassPattern.inPackage("net.mine_diver."));
+    }
+
+    @Test
+    void registersForExistingAndFutureMatches() {
+        final Set<Class<?>> created = ConcurrentHashMap.newKeySet();
+        SarcASM.getManager(Base.class);
+        SarcASM.registerTransformer(ClassPattern.subtypeOf(Base.class), type -> {
+            created.add(type);
+            return new NoopTransformer();
+        });
+        assertTrue(created.contains(Base.class));
+        assertFalse(created.contains(Sub.class));
+        assertTrue(SarcASM.isTargeted(Sub.class));
+
+        assertTrue(SarcASM.getManager(Sub.class).stream().anyMatch(NoopTransformer.class::isInstance));
+        assertTrue(created.contains(Sub.class));
+        SarcASM.getManager(Unrelated.class);
+        assertFalse(created.contains(Unrelated.class));
+    }
+}
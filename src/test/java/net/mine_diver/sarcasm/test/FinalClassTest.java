@@ -0,0 +1,34 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.transformer.ProxyTransformer;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.ClassNode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FinalClassTest {
+    public static final class Sealed {
+        public String name() {
+            return "sealed";
+        }
+    }
+
+    public static class NameRequester implements ProxyTransformer {
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "name()Ljava/lang/String;" };
+        }
+
+        @Override
+        public void transform(ClassNode node) {}
+    }
+
+    @Test
+    void finalClassesAreOnlyPatchedOnJava8() {
+        SarcASM.getManager(Sealed.class).register(new NameRequester());
+        if ("1.8".equals(System.getProperty("java.specification.version")))
+            assertSame(Sealed.class, SarcASM.newUntrackedProxy(Sealed::new).getClass().getSuperclass());
+        else assertThrows(IllegalStateException.class, () -> SarcASM.newUntrackedProxy(Sealed::new));
+    }
+}
@@ -0,0 +1,144 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.SarcASMAgent;
+import net.mine_diver.sarcasm.transformer.ProxyTransformer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.IllegalClassFormatException;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InPlaceTransformationTest {
+    public static class Shape {}
+
+    public static class Circle extends Shape {}
+
+    public static class Square extends Shape {}
+
+    public static class Proxied {
+        public String name() {
+            return "original";
+        }
+    }
+
+    public static class Retransformed {
+        public String name() {
+            return "original";
+        }
+
+        // merging two types here needs them loaded if its frames are computed
+        public Shape shape(boolean round) {
+            final Shape shape = round ? new Circle() : new Square();
+            return shape;
+        }
+    }
+
+    public static class NameTransformer implements ProxyTransformer {
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "name()Ljava/lang/String;" };
+        }
+
+        @Override
+        public void transform(ClassNode node) {
+            for (final MethodNode method : node.methods)
+                for (final AbstractInsnNode insn : method.instructions)
+                    if (insn instanceof LdcInsnNode) ((LdcInsnNode) insn).cst = "transformed";
+        }
+    }
+
+    // stands in for the instrumentation the JVM gives agents, recording what retransformation would define
+    private static final List<ClassFileTransformer> TRANSFORMERS = new ArrayList<>();
+    private static final Map<Class<?>, List<byte[]>> RETRANSFORMED = new HashMap<>();
+    // can't load the fixtures, so computing frames that merge them fails
+    private static final ClassLoader BOOTSTRAP_ONLY = new ClassLoader(null) {};
+
+    @BeforeAll
+    static void installAgent() {
+        SarcASMAgent.install((Instrumentation) Proxy.newProxyInstance(InPlaceTransformationTest.class.getClassLoader(), new Class<?>[] { Instrumentation.class }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "addTransformer":
+                    TRANSFORMERS.add((ClassFileTransformer) args[0]);
+                    return null;
+                case "isRetransformClassesSupported":
+                case "isModifiableClass":
+                    return true;
+                case "retransformClasses":
+                    for (final Class<?> targetClass : (Class<?>[]) args[0]) retransform(targetClass);
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }));
+    }
+
+    private static void retransform(Class<?> targetClass) throws IOException, IllegalClassFormatException {
+        byte[] bytes = readClass(targetClass);
+        for (final ClassFileTransformer transformer : TRANSFORMERS) {
+            final byte[] transformed = transformer.transform(BOOTSTRAP_ONLY, targetClass.getName().replace('.', '/'), targetClass, null, bytes);
+            if (transformed != null) bytes = transformed;
+        }
+        RETRANSFORMED.computeIfAbsent(targetClass, key -> new ArrayList<>()).add(bytes);
+    }
+
+    private static byte[] readClass(Class<?> targetClass) throws IOException {
+        try (InputStream stream = targetClass.getResourceAsStream("/" + targetClass.getName().replace('.', '/') + ".class")) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            for (int read; (read = stream.read(buffer)) != -1;) bytes.write(buffer, 0, read);
+            return bytes.toByteArray();
+        }
+    }
+
+    private static final class DefiningLoader extends ClassLoader {
+        private DefiningLoader() {
+            super(InPlaceTransformationTest.class.getClassLoader());
+        }
+
+        private Class<?> define(Class<?> targetClass, byte[] bytes) {
+            return defineClass(targetClass.getName(), bytes, 0, bytes.length);
+        }
+    }
+
+    @Test
+    void classesAreProxiedUnlessOptedIn() {
+        SarcASM.getManager(Proxied.class).register(new NameTransformer());
+        assertNotSame(Proxied.class, SarcASM.newUntrackedProxy(Proxied::new).getClass());
+        assertFalse(RETRANSFORMED.containsKey(Proxied.class));
+    }
+
+    @Test
+    void optedInClassesOnlyGetTheirTransformedMethodsRewritten() throws ReflectiveOperationException, IOException {
+        SarcASM.setInPlaceTransformation(Retransformed.class, true);
+        SarcASM.getManager(Retransformed.class).register(new NameTransformer());
+        final Retransformed target = new Retransformed();
+        assertSame(target, SarcASM.newUntrackedProxy(() -> target));
+
+        final List<byte[]> retransformed = RETRANSFORMED.get(Retransformed.class);
+        assertNotNull(retransformed);
+        final Class<?> transformedClass = new DefiningLoader().define(Retransformed.class, retransformed.get(retransformed.size() - 1));
+        final Object instance = transformedClass.getDeclaredConstructor().newInstance();
+        assertEquals("transformed", transformedClass.getMethod("name").invoke(instance));
+        assertTrue(transformedClass.getMethod("shape", boolean.class).invoke(instance, true) instanceof Circle);
+
+        // opting out again restores the original class
+        SarcASM.setInPlaceTransformation(Retransformed.class, false);
+        assertArrayEquals(readClass(Retransformed.class), retransformed.get(retransformed.size() - 1));
+    }
+}
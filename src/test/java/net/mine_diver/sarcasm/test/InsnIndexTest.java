@@ -0,0 +1,95 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.util.InsnIndex;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.*;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.objectweb.asm.Opcodes.*;
+
+class InsnIndexTest {
+    private static ClassNode createNode() {
+        final ClassNode node = new ClassNode();
+        node.visit(V1_8, ACC_PUBLIC, "test/Indexed", null, "java/lang/Object", null);
+        for (final String name : new String[] { "first", "second" }) {
+            final MethodNode method = new MethodNode(ACC_PUBLIC, name, "()V", null, null);
+            method.instructions.add(new VarInsnNode(ALOAD, 0));
+            method.instructions.add(new MethodInsnNode(INVOKEVIRTUAL, "java/lang/Object", "hashCode", "()I"));
+            method.instructions.add(new InsnNode(POP));
+            method.instructions.add(new InsnNode(RETURN));
+            node.methods.add(method);
+        }
+        return node;
+    }
+
+    @Test
+    void queriesFollowModificationsInMethodOrder() {
+        final ClassNode node = createNode();
+        final InsnIndex index = InsnIndex.of(node);
+        assertEquals(2, index.getMethodInsns("java/lang/Object").size());
+
+        final MethodNode second = node.methods.get(1);
+        final MethodInsnNode added = new MethodInsnNode(INVOKEVIRTUAL, "java/lang/Object", "toString", "()Ljava/lang/String;");
+        second.instructions.insertBefore(second.instructions.getLast(), new InsnNode(POP));
+        second.instructions.insertBefore(second.instructions.getLast().getPrevious(), added);
+        second.instructions.insertBefore(added, new VarInsnNode(ALOAD, 0));
+
+        assertEquals(Arrays.asList(node.methods.get(0), second, second), Arrays.asList(
+                index.getMethodInsns("java/lang/Object").stream().map(index::getMethod).toArray()
+        ));
+        assertEquals(Collections.singletonList(added), index.getMethodInsns(second, "java/lang/Object", "toString", "()Ljava/lang/String;"));
+        assertEquals(3, index.getByOpcode(second, POP).size() + index.getByOpcode(node.methods.get(0), POP).size());
+
+        second.instructions.remove(added);
+        assertTrue(index.getMethodInsns("java/lang/Object", "toString", "()Ljava/lang/String;").isEmpty());
+        assertNull(index.getMethod(added));
+        InsnIndex.release(node);
+    }
+
+    @Test
+    void inPlaceChangesNeedReindex() {
+        final ClassNode node = createNode();
+        final InsnIndex index = InsnIndex.of(node);
+        final MethodInsnNode call = index.getMethodInsns("java/lang/Object", "hashCode", "()I").get(0);
+        call.name = "toString";
+        call.desc = "()Ljava/lang/String;";
+        index.reindex(call);
+        assertEquals(Collections.singletonList(call), index.getMethodInsns("java/lang/Object", "toString", "()Ljava/lang/String;"));
+        assertEquals(1, index.getMethodInsns("java/lang/Object", "hashCode", "()I").size());
+        InsnIndex.release(node);
+    }
+
+    @Test
+    void replacedListsArePickedUp() {
+        final ClassNode node = createNode();
+        final InsnIndex index = InsnIndex.of(node);
+        assertEquals(2, index.getByOpcode(RETURN).size());
+        final InsnList replacement = new InsnList();
+        replacement.add(new InsnNode(RETURN));
+        node.methods.get(0).instructions = replacement;
+        assertEquals(2, index.getByOpcode(RETURN).size());
+        assertEquals(1, index.getByOpcode(INVOKEVIRTUAL).size());
+        // indexing moved the instructions into a new list
+        assertNotSame(replacement, node.methods.get(0).instructions);
+        assertEquals(0, replacement.size());
+        InsnIndex.release(node);
+    }
+
+    @Test
+    void indexDoesNotRetainNode() throws InterruptedException {
+        ClassNode node = createNode();
+        InsnIndex.of(node).getByOpcode(RETURN);
+        final WeakReference<ClassNode> reference = new WeakReference<>(node);
+        //noinspection UnusedAssignment
+        node = null;
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(reference.get());
+    }
+}
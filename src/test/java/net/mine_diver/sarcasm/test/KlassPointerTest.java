@@ -0,0 +1,84 @@
+package net.mine_diver.sarcasm.test;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.injector.ProxyInjector;
+import net.mine_diver.sarcasm.transformer.ProxyTransformer;
+import net.mine_diver.sarcasm.util.KlassPointer;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KlassPointerTest {
+    public static class Fields {
+        public int first = 0x11223344;
+        public long second = 0x5566778899AABBCCL;
+
+        public int sum() {
+            return first + (int) second;
+        }
+    }
+
+    public static class SameLayout extends Fields {}
+
+    public static class Slot implements ProxyInjector<Fields> {
+        private Fields instance = new Fields();
+
+        @Override
+        public Fields getTargetInstance() {
+            return instance;
+        }
+
+        @Override
+        public void inject(Fields proxyInstance) {
+            instance = proxyInstance;
+        }
+    }
+
+    public static class SumRequester implements ProxyTransformer {
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "sum()I" };
+        }
+
+        @Override
+        public void transform(ClassNode node) {}
+    }
+
+    @Test
+    void readsTheVmOption() {
+        final HotSpotDiagnosticMXBean diagnostics = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+        diagnostics.getVMOption("UseCompressedClassPointers");
+        assertTrue(KlassPointer.isSupported());
+    }
+
+    @Test
+    void inPlaceInjectionKeepsTheFields() {
+        final Slot slot = new Slot();
+        final Fields original = slot.getTargetInstance();
+        SarcASM.setInPlaceInjection(Fields.class, true);
+        SarcASM.registerInjector(Fields.class, slot);
+        SarcASM.getManager(Fields.class).register(new SumRequester());
+
+        assertSame(original, slot.getTargetInstance());
+        assertNotSame(Fields.class, original.getClass());
+        assertTrue(SarcASM.isCurrent(original));
+        assertEquals(0x11223344, original.first);
+        assertEquals(0x5566778899AABBCCL, original.second);
+    }
+
+    @Test
+    void writtenClassPointersRetypeInstances() {
+        // both classes have the same layout, since the subclass doesn't declare any fields
+        final Fields target = new Fields();
+        final long fieldsKlass = KlassPointer.read(target);
+        KlassPointer.write(target, KlassPointer.read(new SameLayout()));
+        assertSame(SameLayout.class, target.getClass());
+        assertEquals(0x11223344, target.first);
+        KlassPointer.write(target, fieldsKlass);
+        assertSame(Fields.class, target.getClass());
+    }
+}
@@ -0,0 +1,90 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.util.InsnIndex;
+import net.mine_diver.sarcasm.util.Locals;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.objectweb.asm.Opcodes.*;
+
+class LocalsTest {
+    private ClassNode node;
+    private MethodNode method;
+    private VarInsnNode store;
+    private InsnNode target;
+
+    private void createMethod() {
+        node = new ClassNode();
+        node.visit(V1_8, ACC_PUBLIC, "test/Locals", null, "java/lang/Object", null);
+        method = new MethodNode(ACC_PUBLIC | ACC_STATIC, "method", "()V", null, null);
+        final LabelNode start = new LabelNode();
+        final LabelNode end = new LabelNode();
+        method.instructions.add(new InsnNode(ICONST_0));
+        store = new VarInsnNode(ISTORE, 0);
+        method.instructions.add(store);
+        method.instructions.add(start);
+        // enough instructions for the queried one to be past the first checkpoint
+        for (int i = 0; i < 40; i++) method.instructions.add(new InsnNode(NOP));
+        target = new InsnNode(NOP);
+        method.instructions.add(target);
+        method.instructions.add(new InsnNode(RETURN));
+        method.instructions.add(end);
+        method.localVariables = new ArrayList<>();
+        method.localVariables.add(new LocalVariableNode("first", "I", null, start, end, 0));
+        method.localVariables.add(new LocalVariableNode("second", "I", null, start, end, 1));
+        method.maxLocals = 2;
+        method.maxStack = 1;
+        node.methods.add(method);
+    }
+
+    private String[] localsAtTarget() {
+        return Arrays.stream(Locals.getLocalsAt(node, method, target, Locals.Settings.DEFAULT))
+                .map(local -> local == null ? null : local.name)
+                .toArray(String[]::new);
+    }
+
+    @Test
+    void replacingAnInstructionBeforeTheCheckpointRebuilds() {
+        createMethod();
+        assertArrayEquals(new String[] { "first", null }, localsAtTarget());
+        method.instructions.set(store, new VarInsnNode(ISTORE, 1));
+        assertArrayEquals(new String[] { null, "second" }, localsAtTarget());
+    }
+
+    @Test
+    void replacingAnIndexedInstructionBeforeTheCheckpointRebuilds() {
+        createMethod();
+        InsnIndex.of(node).refresh();
+        assertArrayEquals(new String[] { "first", null }, localsAtTarget());
+        method.instructions.set(store, new VarInsnNode(ISTORE, 1));
+        assertArrayEquals(new String[] { null, "second" }, localsAtTarget());
+        InsnIndex.release(node);
+    }
+
+    @Test
+    void queriesCountModificationsOfPlainLists() {
+        createMethod();
+        localsAtTarget();
+        assertNotEquals(-1, InsnIndex.getModificationCount(method.instructions));
+        // indexing the class later keeps counting on the same list
+        final InsnList counted = method.instructions;
+        InsnIndex.of(node).refresh();
+        assertSame(counted, method.instructions);
+        method.instructions.set(store, new VarInsnNode(ISTORE, 1));
+        assertArrayEquals(new String[] { null, "second" }, localsAtTarget());
+        InsnIndex.release(node);
+    }
+
+    @Test
+    void releasingTheClassDropsItsIndexes() {
+        createMethod();
+        localsAtTarget();
+        final int size = Locals.getLocalsIndexCache().size();
+        Locals.release(node);
+        assertEquals(size - 1, Locals.getLocalsIndexCache().size());
+    }
+}
@@ -0,0 +1,61 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.metrics.Metrics;
+import net.mine_diver.sarcasm.util.collection.BoundedCache;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+class MetricsTest {
+    // metrics are enabled once per process, so they're read in a process of their own
+    public static final class Child {
+        public static void main(String[] args) throws JMException {
+            final AtomicInteger reads = new AtomicInteger();
+            Metrics.registerGauge("test.read", reads::incrementAndGet);
+            Metrics.registerGauge("test.unread", () -> {
+                throw new AssertionError("Computed an attribute that wasn't requested!");
+            });
+            final BoundedCache<String, String> cache = Metrics.registerCache("test.cache", new BoundedCache<>(1));
+            cache.computeIfAbsent("key", key -> "value");
+            cache.get("key");
+            Metrics.counter("test.counter").add(3);
+            Metrics.timer("test.timer").recordSince(System.nanoTime());
+
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+            System.out.println(server.getAttribute(name, "test.read")
+                    + " " + server.getAttribute(name, "test.cache.hits")
+                    + " " + server.getAttribute(name, "test.cache.misses")
+                    + " " + server.getAttribute(name, "test.counter")
+                    + " " + server.getAttribute(name, "test.timer.count")
+                    + " " + server.getAttributes(name, new String[] { "test.read", "test.missing" }).size()
+                    + " " + reads.get());
+        }
+    }
+
+    @Test
+    void attributesAreComputedOnlyWhenRequested() throws IOException, InterruptedException {
+        assertEquals("1 1 1 3 1 1 2", ChildJvm.run(Child.class, Collections.singletonList("-Dsarcasm.metrics=true"), "run"));
+    }
+
+    @Test
+    void disabledMetricsDontCountCacheHits() {
+        assumeFalse(Metrics.ENABLED);
+        final BoundedCache<String, String> cache = new BoundedCache<>(1);
+        cache.computeIfAbsent("key", key -> "value");
+        cache.get("key");
+        cache.put("other", "value");
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+        assertEquals(0, cache.getEvictionCount());
+    }
+}
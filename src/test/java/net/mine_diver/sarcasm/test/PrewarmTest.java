@@ -0,0 +1,91 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.transformer.ProxyTransformer;
+import net.mine_diver.sarcasm.transformer.PureTransformer;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrewarmTest {
+    public static class Greeter {
+        public String greet() {
+            return "hello";
+        }
+    }
+
+    public static class GreetingTransformer implements ProxyTransformer, PureTransformer {
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile String greeting = "prewarmed";
+
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "greet()Ljava/lang/String;" };
+        }
+
+        @Override
+        public Object getVersionKey() {
+            return greeting;
+        }
+
+        @Override
+        public void transform(ClassNode node) {
+            calls.incrementAndGet();
+            for (final MethodNode method : node.methods)
+                for (final AbstractInsnNode insn : method.instructions)
+                    if (insn instanceof LdcInsnNode) ((LdcInsnNode) insn).cst = greeting;
+        }
+    }
+
+    // the prewarm manifest is configured once per process, so each run is its own
+    public static final class Child {
+        public static void main(String[] args) {
+            final GreetingTransformer transformer = new GreetingTransformer();
+            SarcASM.getManager(Greeter.class).register(transformer);
+            switch (args[0]) {
+                case "generated":
+                    SarcASM.newUntrackedProxy(Greeter::new);
+                    SarcASM.prewarm(Child.class.getClassLoader()).join();
+                    break;
+                case "changed":
+                    SarcASM.prewarm(Child.class.getClassLoader()).join();
+                    transformer.greeting = "changed";
+                    break;
+                default:
+                    SarcASM.prewarm(Child.class.getClassLoader()).join();
+            }
+            System.out.println(SarcASM.newUntrackedProxy(Greeter::new).greet() + " " + transformer.calls.get());
+        }
+    }
+
+    @Test
+    void prewarmedBytesAreOnlyUsedWhileCurrent() throws IOException, InterruptedException {
+        final Path file = Files.createTempFile("sarcasm", ".prewarm");
+        try {
+            Files.delete(file);
+            final List<String> options = Collections.singletonList("-Dsarcasm.prewarm.file=" + file);
+            // nothing recorded yet
+            assertEquals("prewarmed 1", ChildJvm.run(Child.class, options, "record"));
+            assertTrue(Files.isRegularFile(file));
+            // the generation uses the prewarmed bytes instead of transforming again
+            assertEquals("prewarmed 1", ChildJvm.run(Child.class, options, "reuse"));
+            // the proxy class already exists, so there's nothing to prewarm
+            assertEquals("prewarmed 1", ChildJvm.run(Child.class, options, "generated"));
+            // the configuration changed after prewarming, so the prewarmed bytes are stale
+            assertEquals("changed 2", ChildJvm.run(Child.class, options, "changed"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.transformer.ProxyTransformer;
+import net.mine_diver.sarcasm.transformer.ProxyWrapperTransformer;
+import net.mine_diver.sarcasm.transformer.PureTransformer;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProxyFingerprintTest {
+    public static class Product {}
+
+    public static class Factory {
+        public Object create() {
+            return new Product();
+        }
+    }
+
+    public static class Plain {
+        public String name() {
+            return "plain";
+        }
+    }
+
+    public static class Unversioned {
+        public String name() {
+            return "unversioned";
+        }
+    }
+
+    public static class NameRequester implements ProxyTransformer, PureTransformer {
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "name()Ljava/lang/String;" };
+        }
+
+        @Override
+        public Object getVersionKey() {
+            return 0;
+        }
+
+        @Override
+        public void transform(ClassNode node) {}
+    }
+
+    public static class Stateful implements ProxyTransformer {
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "name()Ljava/lang/String;" };
+        }
+
+        @Override
+        public void transform(ClassNode node) {}
+    }
+
+    @Test
+    void transformersThatArentPureDisableTheFingerprint() {
+        assertNotNull(SarcASM.getProxyFingerprint(Unversioned.class));
+        SarcASM.getManager(Unversioned.class).register(new Stateful());
+        assertNull(SarcASM.getProxyFingerprint(Unversioned.class));
+    }
+
+    @Test
+    void constructorFiltersDisableTheFingerprint() {
+        assertNotNull(SarcASM.getProxyFingerprint(Factory.class));
+        ProxyWrapperTransformer.of(Factory.class).addClassFilter(Predicate::and, type -> type != Product.class);
+        assertTrue(ProxyWrapperTransformer.of(Factory.class).isFiltered());
+        assertNull(SarcASM.getProxyFingerprint(Factory.class));
+    }
+
+    @Test
+    void runtimeOnlyPropertiesDontChangeTheFingerprint() {
+        SarcASM.getManager(Plain.class).register(new NameRequester());
+        final String fingerprint = SarcASM.getProxyFingerprint(Plain.class);
+        assertNotNull(fingerprint);
+        final String[] properties = { "sarcasm.metrics", "sarcasm.jfr.untrackedWrapSampling", "sarcasm.superSuper.invokedynamic" };
+        final String[] previous = new String[properties.length];
+        for (int i = 0; i < properties.length; i++) previous[i] = System.getProperty(properties[i]);
+        try {
+            System.setProperty("sarcasm.metrics", "true");
+            System.setProperty("sarcasm.jfr.untrackedWrapSampling", "7");
+            assertEquals(fingerprint, SarcASM.getProxyFingerprint(Plain.class));
+            System.setProperty("sarcasm.superSuper.invokedynamic", String.valueOf(!Boolean.getBoolean("sarcasm.superSuper.invokedynamic")));
+            assertNotEquals(fingerprint, SarcASM.getProxyFingerprint(Plain.class));
+        } finally {
+            for (int i = 0; i < properties.length; i++)
+                if (previous[i] == null) System.clearProperty(properties[i]);
+                else System.setProperty(properties[i], previous[i]);
+        }
+    }
+}
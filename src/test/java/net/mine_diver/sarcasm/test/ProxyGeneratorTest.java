@@ -0,0 +1,90 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.aot.PrecomputedProxies;
+import net.mine_diver.sarcasm.aot.ProxyGenerator;
+import net.mine_diver.sarcasm.transformer.ProxyTransformer;
+import net.mine_diver.sarcasm.transformer.PureTransformer;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProxyGeneratorTest {
+    private static final AtomicInteger TRANSFORMS = new AtomicInteger();
+
+    public static class Precomputed {
+        public String name() {
+            return "original";
+        }
+    }
+
+    public static class Renamer implements ProxyTransformer, PureTransformer {
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "name()Ljava/lang/String;" };
+        }
+
+        @Override
+        public Object getVersionKey() {
+            return 0;
+        }
+
+        @Override
+        public void transform(ClassNode node) {
+            TRANSFORMS.incrementAndGet();
+            for (final MethodNode method : node.methods)
+                for (final AbstractInsnNode insn : method.instructions)
+                    if (insn instanceof LdcInsnNode) ((LdcInsnNode) insn).cst = "renamed";
+        }
+    }
+
+    public static class Init implements Runnable {
+        @Override
+        public void run() {
+            SarcASM.getManager(Precomputed.class).register(new Renamer());
+        }
+    }
+
+    // precomputed proxies are looked up once per class loader, so generating and using them run in processes of their own
+    public static final class Child {
+        public static void main(String[] args) throws Exception {
+            if ("generate".equals(args[0])) {
+                ProxyGenerator.main(new String[] { args[1], "--init", Init.class.getName(), "--target", Precomputed.class.getName() });
+                return;
+            }
+            new Init().run();
+            System.out.println(SarcASM.newUntrackedProxy(Precomputed::new).name() + " " + TRANSFORMS.get());
+        }
+    }
+
+    @Test
+    void generatedProxiesAreUsedInsteadOfTransforming() throws IOException, InterruptedException {
+        final Path jar = Files.createTempFile("sarcasm", ".jar");
+        try {
+            ChildJvm.run(Child.class, Collections.emptyList(), "generate", jar.toString());
+            try (JarFile file = new JarFile(jar.toFile())) {
+                assertNotNull(file.getEntry(PrecomputedProxies.MANIFEST));
+                assertNotNull(file.getEntry(PrecomputedProxies.PROXIES + Precomputed.class.getName().replace('.', '/') + ".bin"));
+            }
+
+            final List<File> classPath = Collections.singletonList(jar.toFile());
+            assertEquals("renamed 0", ChildJvm.run(Child.class, Collections.emptyList(), classPath, "use"));
+            assertEquals("renamed 1", ChildJvm.run(Child.class, Collections.singletonList("-Dsarcasm.aot.disable=true"), classPath, "use"));
+        } finally {
+            Files.delete(jar);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package net.mine_diver.sarcasm.test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.transformer.ProxyTransformer;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProxyRegenerationTest {
+    public static class Reusable {
+        public String name() {
+            return "reusable";
+        }
+    }
+
+    public static class NameRequester implements ProxyTransformer {
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "name()Ljava/lang/String;" };
+        }
+
+        @Override
+        public void transform(ClassNode node) {}
+    }
+
+    @Test
+    void unchangedRegenerationReusesTheProxyClass() throws IOException {
+        SarcASM.getManager(Reusable.class).register(new NameRequester());
+        final Reusable proxy = SarcASM.newUntrackedProxy(Reusable::new);
+        final long epoch = SarcASM.currentEpoch(Reusable.class);
+        assertTrue(SarcASM.isCurrent(proxy));
+
+        final Path file = Files.createTempFile("sarcasm", ".jfr");
+        final List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("net.mine_diver.sarcasm.ProxyGenerated");
+            recording.start();
+            SarcASM.getManager(Reusable.class).register(new NameRequester());
+            assertSame(proxy.getClass(), SarcASM.newUntrackedProxy(Reusable::new).getClass());
+            recording.stop();
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file)
+                    .stream()
+                    .filter(event -> event.getEventType().getName().equals("net.mine_diver.sarcasm.ProxyGenerated"))
+                    .filter(event -> event.getClass("targetClass").getName().equals(Reusable.class.getName()))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.delete(file);
+        }
+
+        assertEquals(epoch, SarcASM.currentEpoch(Reusable.class));
+        assertTrue(SarcASM.isCurrent(proxy));
+        assertEquals(1, events.size());
+        assertTrue(events.get(0).getBoolean("reused"));
+    }
+}
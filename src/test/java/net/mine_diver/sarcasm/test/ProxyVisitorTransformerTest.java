@@ -0,0 +1,94 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.transformer.ProxyTransformer;
+import net.mine_diver.sarcasm.transformer.ProxyVisitorTransformer;
+import net.mine_diver.sarcasm.util.ASMHelper;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProxyVisitorTransformerTest {
+    public static class Tagged {
+        public String tag() {
+            return "tag";
+        }
+    }
+
+    public static class Direct {
+        public String tag() {
+            return "tag";
+        }
+    }
+
+    // appends a suffix to every string constant of the requested method
+    public static class VisitorSuffix implements ProxyVisitorTransformer {
+        private final String suffix;
+
+        public VisitorSuffix(String suffix) {
+            this.suffix = suffix;
+        }
+
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "tag()Ljava/lang/String;" };
+        }
+
+        @Override
+        public ClassVisitor createVisitor(ClassVisitor next) {
+            return new ClassVisitor(Opcodes.ASM9, next) {
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                    return new MethodVisitor(Opcodes.ASM9, super.visitMethod(access, name, descriptor, signature, exceptions)) {
+                        @Override
+                        public void visitLdcInsn(Object value) {
+                            super.visitLdcInsn(value instanceof String ? value + suffix : value);
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    public static class TreeSuffix implements ProxyTransformer {
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "tag()Ljava/lang/String;" };
+        }
+
+        @Override
+        public void transform(ClassNode node) {
+            for (final MethodNode method : node.methods)
+                for (final AbstractInsnNode insn : method.instructions)
+                    if (insn instanceof LdcInsnNode && ((LdcInsnNode) insn).cst instanceof String)
+                        ((LdcInsnNode) insn).cst = ((LdcInsnNode) insn).cst + "-tree";
+        }
+    }
+
+    @Test
+    void visitorsRunInRegistrationOrderAroundTreeTransformers() {
+        SarcASM.getManager(Tagged.class).register(new VisitorSuffix("-first"));
+        SarcASM.getManager(Tagged.class).register(new VisitorSuffix("-second"));
+        SarcASM.getManager(Tagged.class).register(new TreeSuffix());
+        SarcASM.getManager(Tagged.class).register(new VisitorSuffix("-third"));
+        assertEquals("tag-first-second-tree-third", SarcASM.newUntrackedProxy(Tagged::new).tag());
+    }
+
+    @Test
+    void directInvocationTransformsTheTree() {
+        final ClassNode node = ASMHelper.readClassNode(Direct.class);
+        new VisitorSuffix("-direct").transform(node);
+        final MethodNode tag = node.methods.stream().filter(method -> method.name.equals("tag")).findFirst().orElseThrow(AssertionError::new);
+        assertTrue(StreamSupport.stream(tag.instructions.spliterator(), false)
+                .anyMatch(insn -> insn instanceof LdcInsnNode && "tag-direct".equals(((LdcInsnNode) insn).cst)));
+    }
+}
@@ -0,0 +1,46 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.transformer.ProxyWrapperTransformer;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+
+import java.util.function.Predicate;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProxyWrapperTransformerTest {
+    public static class Product {}
+
+    public static class Other {}
+
+    public static class Factory {
+        public Object makeProduct() {
+            return new Product();
+        }
+
+        public Object makeOther() {
+            return new Other();
+        }
+    }
+
+    @Test
+    void classFilterSkipsFilteredConstructors() {
+        assertEquals(2, countWraps(SarcASM.generateProxyBytes(Factory.class)));
+        ProxyWrapperTransformer.of(Factory.class).addClassFilter(Predicate::and, type -> type != Product.class);
+        assertEquals(1, countWraps(SarcASM.generateProxyBytes(Factory.class)));
+    }
+
+    private static long countWraps(byte[] proxyBytes) {
+        final ClassNode node = new ClassNode();
+        new ClassReader(proxyBytes).accept(node, 0);
+        return node.methods
+                .stream()
+                .flatMap(method -> StreamSupport.stream(method.instructions.spliterator(), false))
+                .filter(insn -> insn instanceof MethodInsnNode && "tryWrapUntrackedProxy".equals(((MethodInsnNode) insn).name))
+                .count();
+    }
+}
@@ -0,0 +1,107 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.transformer.ClassContext;
+import net.mine_diver.sarcasm.transformer.ProxyMethodTransformer;
+import net.mine_diver.sarcasm.transformer.PureTransformer;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+
+class PureTransformerTest {
+    public static class Greeter {
+        public String greet() {
+            return "hello";
+        }
+    }
+
+    public static class Impure {
+        public String greet() {
+            return "hello";
+        }
+    }
+
+    // appends to the greeting and adds a field, so replays have to restore both
+    public static class CountingTransformer implements ProxyMethodTransformer, PureTransformer {
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile int version = 1;
+
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "greet()Ljava/lang/String;" };
+        }
+
+        @Override
+        public Set<ClassEffect> getClassEffects() {
+            return EnumSet.of(ClassEffect.ADDS_FIELDS);
+        }
+
+        @Override
+        public Object getVersionKey() {
+            return version;
+        }
+
+        @Override
+        public void transformMethod(ClassContext context, MethodNode method) {
+            calls.incrementAndGet();
+            for (final AbstractInsnNode insn : method.instructions)
+                if (insn instanceof LdcInsnNode) ((LdcInsnNode) insn).cst = ((LdcInsnNode) insn).cst + " v" + version;
+            context.addField(new FieldNode(ACC_PRIVATE, "greeted", "Z", null, null));
+        }
+    }
+
+    public static class ImpureTransformer implements ProxyMethodTransformer {
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "greet()Ljava/lang/String;" };
+        }
+
+        @Override
+        public Set<ClassEffect> getClassEffects() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void transformMethod(ClassContext context, MethodNode method) {}
+    }
+
+    @Test
+    void unchangedGenerationsReplayTheMemoizedResult() {
+        final CountingTransformer transformer = new CountingTransformer();
+        SarcASM.getManager(Greeter.class).register(transformer);
+        final byte[] generated = SarcASM.generateProxyBytes(Greeter.class);
+        assertArrayEquals(generated, SarcASM.generateProxyBytes(Greeter.class));
+        // concurrent replays of the same snapshot
+        IntStream.range(0, 64).parallel().forEach(i -> assertArrayEquals(generated, SarcASM.generateProxyBytes(Greeter.class)));
+        assertEquals(1, transformer.calls.get());
+        assertEquals("hello v1", SarcASM.newUntrackedProxy(Greeter::new).greet());
+
+        final String fingerprint = SarcASM.getProxyFingerprint(Greeter.class);
+        transformer.version = 2;
+        assertNotEquals(fingerprint, SarcASM.getProxyFingerprint(Greeter.class));
+        SarcASM.invalidateProxyClass(Greeter.class);
+        assertEquals("hello v2", SarcASM.newUntrackedProxy(Greeter::new).greet());
+        assertEquals(2, transformer.calls.get());
+    }
+
+    @Test
+    void transformersAfterAnImpureOneRunEveryTime() {
+        final CountingTransformer transformer = new CountingTransformer();
+        SarcASM.getManager(Impure.class).register(new ImpureTransformer());
+        SarcASM.getManager(Impure.class).register(transformer);
+        SarcASM.generateProxyBytes(Impure.class);
+        SarcASM.generateProxyBytes(Impure.class);
+        assertEquals(2, transformer.calls.get());
+    }
+}
@@ -0,0 +1,72 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.transformer.ProxyVisitorTransformer;
+import net.mine_diver.sarcasm.transformer.RequestedMethodsTransformer;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestedMethodsTransformerTest {
+    public static class Branchy {
+        public int count(int[] values) {
+            int count = 0;
+            for (final int value : values) {
+                if (value > 0) count++;
+                else if (value < 0) count--;
+            }
+            try {
+                return Math.addExact(count, values.length);
+            } catch (final ArithmeticException e) {
+                return count;
+            }
+        }
+    }
+
+    public static class CountRequester implements ProxyVisitorTransformer {
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "count([I)I" };
+        }
+
+        @Override
+        public ClassVisitor createVisitor(ClassVisitor next) {
+            return next;
+        }
+    }
+
+    @Test
+    void concurrentGenerationsCopyTheSameMethods() {
+        SarcASM.getManager(Branchy.class).register(new CountRequester());
+        final byte[] expected = SarcASM.generateProxyBytes(Branchy.class);
+        final ClassNode node = new ClassNode();
+        new ClassReader(expected).accept(node, 0);
+        assertTrue(node.methods.stream().anyMatch(method -> "count".equals(method.name)));
+
+        final List<byte[]> generated = IntStream.range(0, 256)
+                .parallel()
+                .mapToObj(i -> SarcASM.generateProxyBytes(Branchy.class))
+                .collect(Collectors.toList());
+        for (final byte[] bytes : generated) assertArrayEquals(expected, bytes);
+    }
+
+    @Test
+    void directInvocationAddsTheRequestedMethods() {
+        SarcASM.getManager(Branchy.class).register(new CountRequester());
+        final ClassNode node = new ClassNode();
+        node.name = "test/BranchyProxy";
+        RequestedMethodsTransformer.of(Branchy.class).transform(node);
+        assertEquals(1, node.methods.size());
+        final MethodNode count = node.methods.get(0);
+        assertEquals("count([I)I", count.name + count.desc);
+        assertEquals("Ltest/BranchyProxy;", count.localVariables.get(0).desc);
+    }
+}
@@ -0,0 +1,107 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.aot.SharedProxyCache;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedProxyCacheTest {
+    private static final int RECORDS = 40;
+    private static final int WINDOW_SIZE = 256;
+
+    private static byte[] bytes(int record) {
+        // some records fit in a window, others cross one or span several
+        final byte[] bytes = new byte[record * 17 % 600 + 1];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) (record * 31 + i);
+        return bytes;
+    }
+
+    // the cache file is read once per process, so each side runs in its own
+    public static final class Child {
+        public static void main(String[] args) throws IOException {
+            final List<String> missing = new ArrayList<>();
+            if ("truncate".equals(args[0])) {
+                // cutting the file under records this process has already scanned
+                for (int record = 0; record < RECORDS; record++) SharedProxyCache.put("record" + record, bytes(record));
+                try (RandomAccessFile file = new RandomAccessFile(args[1], "rw")) {
+                    file.setLength(file.length() / 2);
+                }
+            }
+            for (int record = 0; record < RECORDS; record++) {
+                final String fingerprint = "record" + record;
+                if ("put".equals(args[0])) SharedProxyCache.put(fingerprint, bytes(record));
+                else {
+                    final byte[] bytes = SharedProxyCache.get(fingerprint);
+                    if (bytes == null && !"get".equals(args[0])) {
+                        missing.add(fingerprint);
+                        SharedProxyCache.put(fingerprint, bytes(record));
+                    } else if (!Arrays.equals(bytes(record), bytes)) {
+                        System.out.println("mismatch " + fingerprint);
+                        return;
+                    }
+                }
+            }
+            // republished records have to be read back
+            for (final String fingerprint : missing) {
+                final int record = Integer.parseInt(fingerprint.substring("record".length()));
+                if (!Arrays.equals(bytes(record), SharedProxyCache.get(fingerprint))) {
+                    System.out.println("mismatch " + fingerprint);
+                    return;
+                }
+            }
+            System.out.println(missing.isEmpty() ? "ok" : "missing " + String.join(" ", missing));
+        }
+    }
+
+    @Test
+    void recordsAreSharedAcrossWindows() throws IOException, InterruptedException {
+        final Path file = Files.createTempFile("sarcasm", ".cache");
+        try {
+            final List<String> options = Arrays.asList("-Dsarcasm.sharedCache.file=" + file, "-Dsarcasm.sharedCache.windowSize=" + WINDOW_SIZE);
+            assertEquals("ok", ChildJvm.run(Child.class, options, "put"));
+            assertTrue(Files.size(file) > WINDOW_SIZE * 4);
+            assertEquals("ok", ChildJvm.run(Child.class, options, "get"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void corruptedRecordsAreMisses() throws IOException, InterruptedException {
+        final Path file = Files.createTempFile("sarcasm", ".cache");
+        try {
+            final List<String> options = Collections.singletonList("-Dsarcasm.sharedCache.file=" + file);
+            assertEquals("ok", ChildJvm.run(Child.class, options, "put"));
+            // the last byte of the file is the last byte of the last record
+            final byte[] contents = Files.readAllBytes(file);
+            contents[contents.length - 1] ^= 1;
+            Files.write(file, contents);
+            assertEquals("missing record" + (RECORDS - 1), ChildJvm.run(Child.class, options, "repair"));
+            assertEquals("ok", ChildJvm.run(Child.class, options, "get"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void truncatedRecordsAreMisses() throws IOException, InterruptedException {
+        final Path file = Files.createTempFile("sarcasm", ".cache");
+        try {
+            final List<String> options = Collections.singletonList("-Dsarcasm.sharedCache.file=" + file);
+            final String output = ChildJvm.run(Child.class, options, "truncate", file.toString());
+            assertTrue(output.startsWith("missing ") && output.endsWith(" record" + (RECORDS - 1)), output);
+            assertEquals("ok", ChildJvm.run(Child.class, options, "get"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.injector.StaticFieldInjector;
+import net.mine_diver.sarcasm.transformer.ProxyTransformer;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StaticFieldInjectorTest {
+    public static class Service {
+        public String name() {
+            return "service";
+        }
+    }
+
+    public static class Holder {
+        public static Service INSTANCE = new Service();
+        public static String WRONG_TYPE = "";
+        public Service instanceField;
+    }
+
+    // declares an injector for its own field while it's being initialized
+    public static class SelfDeclaring {
+        public static Service INSTANCE = new Service();
+        public static final StaticFieldInjector<Service> INJECTOR = StaticFieldInjector.of(Service.class, SelfDeclaring.class, "INSTANCE");
+    }
+
+    public static class Registry {
+        public static Service INSTANCE = new Service();
+    }
+
+    // defines its own copy of the registry class
+    private static final class RegistryLoader extends ClassLoader {
+        private RegistryLoader() {
+            super(StaticFieldInjectorTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(Registry.class.getName())) return super.loadClass(name, resolve);
+            synchronized (getClassLoadingLock(name)) {
+                final Class<?> loaded = findLoadedClass(name);
+                if (loaded != null) return loaded;
+                try (InputStream stream = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    final byte[] buffer = new byte[4096];
+                    for (int read; (read = stream.read(buffer)) != -1;) bytes.write(buffer, 0, read);
+                    return defineClass(name, bytes.toByteArray(), 0, bytes.size());
+                } catch (final IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+        }
+    }
+
+    public static class NameRequester implements ProxyTransformer {
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "name()Ljava/lang/String;" };
+        }
+
+        @Override
+        public void transform(ClassNode node) {}
+    }
+
+    @Test
+    void injectsIntoTheField() {
+        final Service original = Holder.INSTANCE;
+        final StaticFieldInjector<Service> injector = StaticFieldInjector.of(Service.class, Holder.class, "INSTANCE");
+        assertSame(injector, StaticFieldInjector.of(Service.class, Holder.class, "INSTANCE"));
+        assertSame(original, injector.getTargetInstance());
+
+        SarcASM.registerInjector(Service.class, injector);
+        SarcASM.getManager(Service.class).register(new NameRequester());
+        assertNotSame(original, Holder.INSTANCE);
+        assertSame(Service.class, Holder.INSTANCE.getClass().getSuperclass());
+        assertTrue(SarcASM.isCurrent(Holder.INSTANCE));
+        assertEquals("service", Holder.INSTANCE.name());
+    }
+
+    @Test
+    void rejectsUnusableFields() {
+        assertThrows(IllegalArgumentException.class, () -> StaticFieldInjector.of(Service.class, Holder.class, "MISSING"));
+        assertThrows(IllegalArgumentException.class, () -> StaticFieldInjector.of(Service.class, Holder.class, "WRONG_TYPE"));
+        assertThrows(IllegalArgumentException.class, () -> StaticFieldInjector.of(Service.class, Holder.class, "instanceField"));
+    }
+
+    @Test
+    void ownerInitializerCanDeclareInjectors() {
+        // the owner isn't initialized yet, so resolving the field runs its static initializer
+        final StaticFieldInjector<Service> injector = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> StaticFieldInjector.of(Service.class, SelfDeclaring.class, "INSTANCE"));
+        assertSame(SelfDeclaring.INJECTOR, injector);
+        assertSame(SelfDeclaring.INSTANCE, injector.getTargetInstance());
+    }
+
+    private static WeakReference<ClassLoader> declareAndDrop() throws ClassNotFoundException {
+        final ClassLoader loader = new RegistryLoader();
+        final Class<?> registryClass = loader.loadClass(Registry.class.getName());
+        assertNotSame(Registry.class, registryClass);
+        assertNotNull(StaticFieldInjector.of(Service.class, registryClass, "INSTANCE").getTargetInstance());
+        return new WeakReference<>(loader);
+    }
+
+    @Test
+    void injectorsDontKeepOwnersAlive() throws ClassNotFoundException, InterruptedException {
+        final WeakReference<ClassLoader> loader = declareAndDrop();
+        for (int i = 0; i < 50 && loader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(loader.get());
+    }
+}
@@ -0,0 +1,87 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.transformer.ProxyTransformer;
+import net.mine_diver.sarcasm.transformer.PureTransformer;
+import net.mine_diver.sarcasm.transformer.SuperSuperTransformer;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SuperSuperTransformerTest {
+    public static class Base {
+        public String name() {
+            return "base";
+        }
+    }
+
+    public static class Child extends Base {
+        @Override
+        public String name() {
+            return "child " + super.name();
+        }
+    }
+
+    public static class Dispatched extends Base {
+        @Override
+        public String name() {
+            return "dispatched " + super.name();
+        }
+    }
+
+    public static class NameRequester implements ProxyTransformer, PureTransformer {
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "name()Ljava/lang/String;" };
+        }
+
+        @Override
+        public Object getVersionKey() {
+            return 0;
+        }
+
+        @Override
+        public void transform(ClassNode node) {}
+    }
+
+    @Test
+    void setDispatchChangesFingerprintAndNewProxies() {
+        SarcASM.getManager(Child.class).register(new NameRequester());
+        final SuperSuperTransformer<Child> transformer = SuperSuperTransformer.of(Child.class);
+        transformer.setDispatch(SuperSuperTransformer.Dispatch.METHOD_HANDLE);
+        final String methodHandleFingerprint = SarcASM.getProxyFingerprint(Child.class);
+        assertFalse(hasInvokeDynamic(SarcASM.generateProxyBytes(Child.class)));
+
+        transformer.setDispatch(SuperSuperTransformer.Dispatch.INVOKEDYNAMIC);
+        assertNotEquals(methodHandleFingerprint, SarcASM.getProxyFingerprint(Child.class));
+        assertTrue(hasInvokeDynamic(SarcASM.generateProxyBytes(Child.class)));
+
+        transformer.setDispatch(SuperSuperTransformer.Dispatch.METHOD_HANDLE);
+        assertEquals(methodHandleFingerprint, SarcASM.getProxyFingerprint(Child.class));
+    }
+
+    @Test
+    void everyDispatchCallsTheGrandparentMethod() {
+        SarcASM.getManager(Dispatched.class).register(new NameRequester());
+        for (final SuperSuperTransformer.Dispatch dispatch : SuperSuperTransformer.Dispatch.values()) {
+            SuperSuperTransformer.of(Dispatched.class).setDispatch(dispatch);
+            SarcASM.invalidateProxyClass(Dispatched.class);
+            final Dispatched proxy = SarcASM.newUntrackedProxy(Dispatched::new);
+            assertNotSame(Dispatched.class, proxy.getClass());
+            // called twice, so the lazily linked call site is also used once it is bound
+            assertEquals("dispatched base", proxy.name(), dispatch.name());
+            assertEquals("dispatched base", proxy.name(), dispatch.name());
+        }
+    }
+
+    private static boolean hasInvokeDynamic(byte[] proxyBytes) {
+        final ClassNode node = new ClassNode();
+        new ClassReader(proxyBytes).accept(node, 0);
+        return node.methods.stream().anyMatch(method -> StreamSupport.stream(method.instructions.spliterator(), false).anyMatch(insn -> insn instanceof InvokeDynamicInsnNode));
+    }
+}
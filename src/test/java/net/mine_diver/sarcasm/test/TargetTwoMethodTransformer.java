@@ -0,0 +1,23 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.transformer.ClassContext;
+import net.mine_diver.sarcasm.transformer.ProxyMethodTransformer;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import static org.objectweb.asm.Opcodes.LDC;
+
+public class TargetTwoMethodTransformer implements ProxyMethodTransformer {
+    @Override
+    public String[] getRequestedMethods() {
+        return new String[] {
+                "testRecursion()Ljava/lang/String;"
+        };
+    }
+
+    @Override
+    public void transformMethod(ClassContext context, MethodNode method) {
+        if ("testRecursion".equals(method.name))
+            context.getInsnIndex().getByOpcode(method, LDC).stream().map(node1 -> (LdcInsnNode) node1).findFirst().ifPresent(ldcInsnNode -> ldcInsnNode.cst = "Recursion works!");
+    }
+}
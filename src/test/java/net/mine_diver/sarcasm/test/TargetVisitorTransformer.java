@@ -0,0 +1,45 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.transformer.ProxyVisitorTransformer;
+import net.mine_diver.sarcasm.transformer.TransformerToggle;
+import net.mine_diver.sarcasm.util.Identifier;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.PrintStream;
+
+public class TargetVisitorTransformer implements ProxyVisitorTransformer {
+    public static final TransformerToggle INJECTED_PRINT = TransformerToggle.of(Identifier.of("sarcasm_test:injected_print"));
+
+    @Override
+    public String[] getRequestedMethods() {
+        return new String[] {
+                "test(Ljava/lang/String;)V"
+        };
+    }
+
+    @Override
+    public ClassVisitor createVisitor(ClassVisitor next) {
+        return new ClassVisitor(Opcodes.ASM9, next) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                MethodVisitor visitor = super.visitMethod(access, name, descriptor, signature, exceptions);
+                return !"test".equals(name) ? visitor : new MethodVisitor(Opcodes.ASM9, visitor) {
+                    @Override
+                    public void visitCode() {
+                        super.visitCode();
+                        final Label skip = new Label();
+                        INJECTED_PRINT.visitGuard(this, skip);
+                        super.visitFieldInsn(Opcodes.GETSTATIC, Type.getInternalName(System.class), "out", "L" + Type.getInternalName(PrintStream.class) + ";");
+                        super.visitLdcInsn("Injected print!");
+                        super.visitMethodInsn(Opcodes.INVOKEVIRTUAL, Type.getInternalName(PrintStream.class), "println", Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(String.class)), false);
+                        super.visitLabel(skip);
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,59 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.transformer.ProxyTransformer;
+import net.mine_diver.sarcasm.transformer.TransformerManager;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransformerManagerTest {
+    public static class Named {
+        public String name() {
+            return "original";
+        }
+    }
+
+    public static class Renamer implements ProxyTransformer {
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "name()Ljava/lang/String;" };
+        }
+
+        @Override
+        public void transform(ClassNode node) {
+            for (final MethodNode method : node.methods)
+                for (final AbstractInsnNode insn : method.instructions)
+                    if (insn instanceof LdcInsnNode) ((LdcInsnNode) insn).cst = "renamed";
+        }
+    }
+
+    private static String proxyName() {
+        return SarcASM.newUntrackedProxy(Named::new).name();
+    }
+
+    @Test
+    void disabledAndUnregisteredTransformersAreSkipped() {
+        final TransformerManager manager = SarcASM.getManager(Named.class);
+        final Renamer renamer = new Renamer();
+        manager.register(renamer);
+        assertEquals("renamed", proxyName());
+
+        manager.disable(renamer);
+        assertFalse(manager.isEnabled(renamer));
+        assertFalse(manager.stream().anyMatch(transformer -> transformer == renamer));
+        assertEquals("original", proxyName());
+
+        manager.enable(renamer);
+        assertTrue(manager.isEnabled(renamer));
+        assertEquals("renamed", proxyName());
+
+        assertTrue(manager.unregister(renamer));
+        assertFalse(manager.unregister(renamer));
+        assertEquals("original", proxyName());
+    }
+}
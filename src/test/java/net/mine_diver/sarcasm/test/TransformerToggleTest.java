@@ -0,0 +1,66 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.transformer.ClassContext;
+import net.mine_diver.sarcasm.transformer.ProxyMethodTransformer;
+import net.mine_diver.sarcasm.transformer.TransformerToggle;
+import net.mine_diver.sarcasm.util.Identifier;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+
+class TransformerToggleTest {
+    public static class Counter {
+        public int count() {
+            return 0;
+        }
+    }
+
+    public static class Hits {
+        public static final AtomicInteger COUNT = new AtomicInteger();
+
+        public static void hit() {
+            COUNT.incrementAndGet();
+        }
+    }
+
+    public static class HitTransformer implements ProxyMethodTransformer {
+        static final TransformerToggle TOGGLE = TransformerToggle.of(Identifier.of("sarcasm_test:toggle_test"));
+
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "count()I" };
+        }
+
+        @Override
+        public void transformMethod(ClassContext context, MethodNode method) {
+            final InsnList injected = new InsnList();
+            injected.add(new MethodInsnNode(INVOKESTATIC, Type.getInternalName(Hits.class), "hit", "()V", false));
+            method.instructions.insert(TOGGLE.wrap(injected));
+        }
+    }
+
+    @Test
+    void disabledToggleSkipsTheInjectedCode() {
+        HitTransformer.TOGGLE.setEnabled(false);
+        SarcASM.getManager(Counter.class).register(new HitTransformer());
+        final Counter proxy = SarcASM.newUntrackedProxy(Counter::new);
+        assertNotSame(Counter.class, proxy.getClass());
+
+        proxy.count();
+        assertEquals(0, Hits.COUNT.get());
+        HitTransformer.TOGGLE.setEnabled(true);
+        proxy.count();
+        assertEquals(1, Hits.COUNT.get());
+        HitTransformer.TOGGLE.setEnabled(false);
+        proxy.count();
+        assertEquals(1, Hits.COUNT.get());
+    }
+}
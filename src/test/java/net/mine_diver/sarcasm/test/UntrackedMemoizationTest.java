@@ -0,0 +1,67 @@
+package net.mine_diver.sarcasm.test;
+
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.transformer.ProxyTransformer;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UntrackedMemoizationTest {
+    public static class Memoized {
+        public String name() {
+            return "memoized";
+        }
+    }
+
+    public static class Copied {
+        public String name() {
+            return "copied";
+        }
+    }
+
+    public static class NameRequester implements ProxyTransformer {
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "name()Ljava/lang/String;" };
+        }
+
+        @Override
+        public void transform(ClassNode node) {}
+    }
+
+    public static class Renamer extends NameRequester {
+        @Override
+        public void transform(ClassNode node) {
+            for (final MethodNode method : node.methods)
+                for (final AbstractInsnNode insn : method.instructions)
+                    if (insn instanceof LdcInsnNode) ((LdcInsnNode) insn).cst = "renamed";
+        }
+    }
+
+    @Test
+    void memoizedWrapsReturnTheSameProxyUntilTheProxyClassChanges() {
+        SarcASM.getManager(Memoized.class).register(new NameRequester());
+        SarcASM.setUntrackedProxyMemoization(Memoized.class, true);
+        final Memoized target = new Memoized();
+        final Memoized proxy = SarcASM.tryWrapUntrackedProxy(target);
+        assertNotSame(target, proxy);
+        assertSame(proxy, SarcASM.tryWrapUntrackedProxy(target));
+        assertNotSame(proxy, SarcASM.tryWrapUntrackedProxy(new Memoized()));
+
+        SarcASM.getManager(Memoized.class).register(new Renamer());
+        final Memoized renamed = SarcASM.tryWrapUntrackedProxy(target);
+        assertNotSame(proxy, renamed);
+        assertEquals("renamed", renamed.name());
+    }
+
+    @Test
+    void wrapsAreCopiedWithoutMemoization() {
+        SarcASM.getManager(Copied.class).register(new NameRequester());
+        final Copied target = new Copied();
+        assertNotSame(SarcASM.tryWrapUntrackedProxy(target), SarcASM.tryWrapUntrackedProxy(target));
+    }
+}
@@ -0,0 +1,65 @@
+package net.mine_diver.sarcasm.test;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import net.mine_diver.sarcasm.SarcASM;
+import net.mine_diver.sarcasm.transformer.ProxyTransformer;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UntrackedWrapEventTest {
+    private static final String EVENT = "net.mine_diver.sarcasm.UntrackedWrap";
+    private static final int WRAPS = 10;
+
+    public static class Wrapped {
+        public String name() {
+            return "wrapped";
+        }
+    }
+
+    public static class NameRequester implements ProxyTransformer {
+        @Override
+        public String[] getRequestedMethods() {
+            return new String[] { "name()Ljava/lang/String;" };
+        }
+
+        @Override
+        public void transform(ClassNode node) {}
+    }
+
+    private static long recordWraps(Recording recording) throws IOException {
+        final Path file = Files.createTempFile("sarcasm", ".jfr");
+        try {
+            recording.start();
+            for (int i = 0; i < WRAPS; i++) SarcASM.tryWrapUntrackedProxy(new Wrapped());
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file)
+                    .stream()
+                    .filter(event -> event.getEventType().getName().equals(EVENT))
+                    .filter(event -> event.getClass("targetClass").getName().equals(Wrapped.class.getName()))
+                    .count();
+        } finally {
+            recording.close();
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void wrapsAreOnlyRecordedIfEnabled() throws IOException, ParseException {
+        SarcASM.getManager(Wrapped.class).register(new NameRequester());
+        assertEquals(0, recordWraps(new Recording(Configuration.getConfiguration("profile"))));
+
+        final Recording enabled = new Recording();
+        enabled.enable(EVENT);
+        assertEquals(WRAPS, recordWraps(enabled));
+    }
+}